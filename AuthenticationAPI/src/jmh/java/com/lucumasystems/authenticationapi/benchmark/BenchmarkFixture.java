@@ -0,0 +1,133 @@
+package com.lucumasystems.authenticationapi.benchmark;
+
+import com.lucumasystems.authenticationapi.entity.Permission;
+import com.lucumasystems.authenticationapi.entity.Role;
+import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.orm.PermissionRepository;
+import com.lucumasystems.authenticationapi.orm.RefreshTokenRepository;
+import com.lucumasystems.authenticationapi.orm.RoleRepository;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import com.lucumasystems.authenticationapi.security.AuthzVersions;
+import com.lucumasystems.authenticationapi.security.PermissionIndex;
+import com.lucumasystems.authenticationapi.security.PrincipalCache;
+import com.lucumasystems.authenticationapi.security.SigningKeyRing;
+import com.lucumasystems.authenticationapi.security.TokenRevocationRegistry;
+import com.lucumasystems.authenticationapi.security.VerifiedTokenCache;
+import com.lucumasystems.authenticationapi.service.JwtService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Wires the token services by hand against stubbed repositories, so benchmarks measure the application code
+ * and not a database or a Spring context. Stubs are created stub-only so they do not record invocations.
+ */
+final class BenchmarkFixture {
+
+    static final String SECRET = "c2VjcmV0LWtleS1mb3ItYmVuY2htYXJraW5nLXRoZS1qd3Qtc2VydmljZS1ob3QtcGF0aHMtb25seQ==";
+    static final int ROLE_COUNT = 3;
+    static final int PERMISSIONS_PER_ROLE = 20;
+
+    final User user;
+    final List<String> roles;
+    final List<String> permissions;
+    final JwtService jwtService;
+    final PrincipalCache principalCache;
+    final AuthzVersions authzVersions;
+
+    BenchmarkFixture(boolean claimsCacheEnabled) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        user = user();
+        roles = user.getRoles().stream().map(Role::getName).toList();
+        permissions = user.getRoles().stream().flatMap(role -> role.getPermissions().stream()).map(Permission::getName).toList();
+
+        RoleRepository roleRepository = stub(RoleRepository.class);
+        PermissionRepository permissionRepository = stub(PermissionRepository.class);
+        when(roleRepository.findAllWithPermissions()).thenReturn(List.copyOf(user.getRoles()));
+        when(permissionRepository.findAll()).thenReturn(user.getRoles().stream().flatMap(role -> role.getPermissions().stream()).toList());
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(claimsCacheEnabled, 10_000, meterRegistry);
+        PermissionIndex permissionIndex = new PermissionIndex(roleRepository, permissionRepository, verifiedTokenCache);
+        permissionIndex.rebuild();
+        authzVersions = new AuthzVersions(stub(JdbcTemplate.class));
+        authzVersions.observeUser(user.getId(), AuthzVersions.versionOf(user.getUpdatedAt()));
+
+        RefreshTokenRepository refreshTokenRepository = stub(RefreshTokenRepository.class);
+        when(refreshTokenRepository.existsByUserIdAndJti(anyLong(), anyString())).thenReturn(true);
+
+        jwtService = new JwtService(refreshTokenRepository,
+                new TokenRevocationRegistry(refreshTokenRepository),
+                new SigningKeyRing(SECRET, "primary", "HS256", "", ""),
+                verifiedTokenCache,
+                authzVersions,
+                permissionIndex,
+                event -> {
+                });
+        ReflectionTestUtils.setField(jwtService, "validationMode", "memory");
+        ReflectionTestUtils.setField(jwtService, "claimsFormat", "compact");
+        ReflectionTestUtils.setField(jwtService, "accessTtl", Duration.ofHours(3));
+        ReflectionTestUtils.setField(jwtService, "refreshTtl", Duration.ofDays(14));
+
+        UserRepository userRepository = stub(UserRepository.class);
+        when(userRepository.findActiveUserByUsername(user.getUsername())).thenReturn(Optional.of(user));
+        principalCache = new PrincipalCache(userRepository, Duration.ofMinutes(5), 10_000, meterRegistry);
+    }
+
+    String issueToken() {
+        return jwtService.generate(user, roles, permissions).accessToken();
+    }
+
+    private static User user() {
+        LocalDateTime now = LocalDateTime.now();
+        Set<Role> roles = new HashSet<>();
+        int permissionId = 1;
+        for (int r = 1; r <= ROLE_COUNT; r++) {
+            Set<Permission> permissions = new HashSet<>();
+            for (int p = 0; p < PERMISSIONS_PER_ROLE; p++, permissionId++) {
+                permissions.add(Permission.builder()
+                        .id(permissionId)
+                        .name("PERMISSION_" + permissionId)
+                        .active(true)
+                        .createdAt(now)
+                        .updatedAt(now)
+                        .build());
+            }
+            roles.add(Role.builder()
+                    .id(r)
+                    .name("ROLE_" + r)
+                    .isActive(true)
+                    .permissions(permissions)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+        return User.builder()
+                .id(1L)
+                .username("benchmark.user")
+                .password("{noop}password")
+                .roles(roles)
+                .accountNonExpired(true)
+                .accountNonLocked(true)
+                .credentialsNonExpired(true)
+                .enabled(true)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
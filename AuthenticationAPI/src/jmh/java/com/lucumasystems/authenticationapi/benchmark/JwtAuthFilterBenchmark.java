@@ -0,0 +1,69 @@
+package com.lucumasystems.authenticationapi.benchmark;
+
+import com.lucumasystems.authenticationapi.JwtAuthFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through the filter: token verification, principal resolution, session check
+ * and security context population.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+
+    private static final FilterChain CHAIN = (request, response) -> {
+    };
+
+    @Param({"stateless", "database"})
+    public String authMode;
+
+    @Param({"true", "false"})
+    public boolean claimsCacheEnabled;
+
+    private JwtAuthFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixture fixture = new BenchmarkFixture(claimsCacheEnabled);
+        filter = new JwtAuthFilter(fixture.jwtService, fixture.principalCache, fixture.authzVersions);
+        ReflectionTestUtils.setField(filter, "authMode", authMode);
+        authorization = "Bearer " + fixture.issueToken();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse doFilter() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/roles");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, CHAIN);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+}
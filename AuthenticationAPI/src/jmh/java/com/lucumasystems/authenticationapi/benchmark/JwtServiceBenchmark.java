@@ -0,0 +1,72 @@
+package com.lucumasystems.authenticationapi.benchmark;
+
+import com.lucumasystems.authenticationapi.security.AuthPrincipal;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and verification. With the claims cache disabled every read pays for signature verification
+ * and claim decoding, which is the cost of the first request made with a token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    @Param({"true", "false"})
+    public boolean claimsCacheEnabled;
+
+    private BenchmarkFixture fixture;
+    private String token;
+    private VerifiedToken verifiedToken;
+    private AuthPrincipal principal;
+
+    @Setup
+    public void setUp() {
+        fixture = new BenchmarkFixture(claimsCacheEnabled);
+        token = fixture.issueToken();
+        verifiedToken = fixture.jwtService.verify(token);
+        principal = AuthPrincipal.from(fixture.user);
+    }
+
+    @Benchmark
+    public String generate() {
+        return fixture.issueToken();
+    }
+
+    @Benchmark
+    public Claims extractAllClaims() {
+        return fixture.jwtService.extractAllClaims(token);
+    }
+
+    @Benchmark
+    public String getUsername() {
+        return fixture.jwtService.getUsername(token);
+    }
+
+    @Benchmark
+    public int getUserId() {
+        return fixture.jwtService.getUserId(token);
+    }
+
+    @Benchmark
+    public boolean isValidToken() {
+        return fixture.jwtService.isValidToken(verifiedToken, principal);
+    }
+}
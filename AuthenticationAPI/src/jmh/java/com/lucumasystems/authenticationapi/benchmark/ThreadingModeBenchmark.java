@@ -0,0 +1,119 @@
+package com.lucumasystems.authenticationapi.benchmark;
+
+import com.lucumasystems.authenticationapi.service.JwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of requests served by Tomcat's default 200 platform threads versus one virtual thread per request
+ * behind the admission limit. A share of the requests holds one of ten connections for a few milliseconds,
+ * like a login or a database-validated token, and the rest only verify a token, like requests in stateless mode.
+ * The score is the time to drain the whole burst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadingModeBenchmark {
+
+    private static final int PLATFORM_THREADS = 200;
+    private static final int CONNECTIONS = 10;
+    private static final int ADMITTED_REQUESTS = 100;
+    private static final long QUERY_MILLIS = 5;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"2000"})
+    public int requests;
+
+    /**
+     * Every n-th request uses a connection.
+     */
+    @Param({"5", "1"})
+    public int databaseEvery;
+
+    private JwtService jwtService;
+    private String token;
+    private ExecutorService executor;
+    private Semaphore connections;
+    private Semaphore admission;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixture fixture = new BenchmarkFixture(true);
+        jwtService = fixture.jwtService;
+        token = fixture.issueToken();
+        connections = new Semaphore(CONNECTIONS, true);
+        if ("virtual".equals(mode)) {
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            admission = new Semaphore(ADMITTED_REQUESTS, true);
+        } else {
+            executor = Executors.newFixedThreadPool(PLATFORM_THREADS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int drainBurst() throws InterruptedException, ExecutionException {
+        List<Future<Boolean>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            boolean usesDatabase = i % databaseEvery == 0;
+            responses.add(executor.submit(() -> handle(usesDatabase)));
+        }
+        int served = 0;
+        for (Future<Boolean> response : responses) {
+            if (response.get()) {
+                served++;
+            }
+        }
+        return served;
+    }
+
+    private boolean handle(boolean usesDatabase) throws InterruptedException {
+        if (admission != null) {
+            admission.acquire();
+        }
+        try {
+            boolean valid = jwtService.verify(token).getUserId() > 0;
+            if (usesDatabase) {
+                connections.acquire();
+                try {
+                    Thread.sleep(QUERY_MILLIS);
+                } finally {
+                    connections.release();
+                }
+            }
+            return valid;
+        } finally {
+            if (admission != null) {
+                admission.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.lucumasystems.authenticationapi.benchmark;
+
+import com.lucumasystems.authenticationapi.dto.UserDetailsDto;
+import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.orm.Mapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = new BenchmarkFixture(true).user;
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return user.getAuthorities();
+    }
+
+    @Benchmark
+    public UserDetailsDto toUserOutDto() {
+        return Mapper.toUserOutDto(user);
+    }
+}
@@ -1,8 +1,9 @@
 package com.lucumasystems.authenticationapi;
 
-import com.lucumasystems.authenticationapi.entity.User;
-import com.lucumasystems.authenticationapi.orm.RefreshTokenRepository;
-import com.lucumasystems.authenticationapi.orm.UserRepository;
+import com.lucumasystems.authenticationapi.security.AuthPrincipal;
+import com.lucumasystems.authenticationapi.security.AuthzVersions;
+import com.lucumasystems.authenticationapi.security.PrincipalCache;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
 import com.lucumasystems.authenticationapi.service.JwtService;
 import io.jsonwebtoken.MalformedJwtException;
 import jakarta.servlet.FilterChain;
@@ -12,6 +13,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
@@ -21,15 +23,34 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Set;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+    /**
+     * Endpoints that authenticate with their body; a client renewing its session still sends the expired access
+     * token, which must not get the request rejected before it reaches the controller.
+     */
+    private static final Set<String> CREDENTIAL_ENDPOINTS = Set.of("/auth/login", "/auth/refresh");
+
+    /**
+     * stateless: build the principal from the token claims while their versions are current.
+     * database: always resolve the principal from the user table (through the principal cache).
+     */
+    @Value("${auth.mode:database}")
+    private String authMode;
     private final JwtService jwtService;
-    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+    private final AuthzVersions authzVersions;
+
 
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return CREDENTIAL_ENDPOINTS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
@@ -52,11 +73,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         try {
             token = authHeader.substring(7);
             log.debug("Token extracted: {}", token);
-            username = jwtService.getUsername(token);
+            VerifiedToken verifiedToken = jwtService.verify(token);
+            username = verifiedToken.getUsername();
             log.debug("Username extracted from token: {}", username);
 
             if (!username.isEmpty() && SecurityContextHolder.getContext().getAuthentication() == null) {
-                User applicationUser = userRepository.findActiveUserByUsername(username).orElse(null);
+                AuthPrincipal applicationUser = resolvePrincipal(verifiedToken);
                 if (applicationUser == null) {
                     log.warn("User not found for ID: {}", username);
                     response.sendError(HttpStatus.UNAUTHORIZED.value(), "Username not found");
@@ -75,8 +97,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                     return;
                 }
 
-                if (jwtService.isValidToken(token, applicationUser)) {
+                if (jwtService.isValidToken(verifiedToken, applicationUser)) {
                     log.debug("Token is valid for user: {}", username);
+                    request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, verifiedToken);
                     SecurityContext context = SecurityContextHolder.createEmptyContext();
 
                     UsernamePasswordAuthenticationToken authenticationToken =
@@ -98,4 +121,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    private AuthPrincipal resolvePrincipal(VerifiedToken token) {
+        if ("stateless".equals(authMode) && authzVersions.isCurrent(token)) {
+            return AuthPrincipal.from(token);
+        }
+        AuthPrincipal principal = principalCache.get(token.getUsername()).orElse(null);
+        if (principal != null) {
+            authzVersions.observeUser(principal.getId(), principal.getVersion());
+        }
+        return principal;
+    }
 }
@@ -1,11 +1,15 @@
 package com.lucumasystems.authenticationapi;
 
 import jakarta.servlet.http.HttpServletResponse;
+import com.lucumasystems.authenticationapi.security.CompiledPermissionEvaluator;
+import com.lucumasystems.authenticationapi.security.PermissionExpressionHandler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -15,6 +19,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.DefaultSecurityFilterChain;
@@ -27,20 +32,34 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 @Slf4j
 public class OnStartup {
     private final UserDetailsService userService;
+    private final UserDetailsPasswordService userDetailsPasswordService;
     private final AuthenticationManager authenticationManager;
     private final JwtAuthFilter jwtAuthFilter;
     private final PasswordEncoder passwordEncoder;
+    /**
+     * Batch introspection reports the roles and permissions of any token it is given, so only the gateway and
+     * other services holding this role may call it.
+     */
+    @Value("${introspection.authority:TOKEN_INTROSPECTION}")
+    private String introspectionAuthority;
 
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
         return authenticationConfiguration.getAuthenticationManager();
     }
 
+    @Bean
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler(@Lazy CompiledPermissionEvaluator permissionEvaluator) {
+        return new PermissionExpressionHandler(permissionEvaluator);
+    }
+
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
         daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
         daoAuthenticationProvider.setUserDetailsService(userService);
+        // Rehashes passwords stored with an outdated algorithm or cost after they are verified
+        daoAuthenticationProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return daoAuthenticationProvider;
     }
 
@@ -54,9 +73,11 @@ public class OnStartup {
                     .sessionManagement(managementConfigure -> managementConfigure.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                     .authorizeHttpRequests(authorizationManagerRequestMatcherRegistry ->
                             authorizationManagerRequestMatcherRegistry
-                                    .requestMatchers("/api/permissions/**","/api/roles/**","/api/admin")
+                                    .requestMatchers("/api/permissions/**","/api/roles/**","/api/admin/**","/api/audit-logs/**")
                                     .hasAnyAuthority("SUPER_ADMIN")
-                                    .requestMatchers("/api/auth/**")
+                                    .requestMatchers("/authenticate/tokens")
+                                    .hasAnyAuthority(introspectionAuthority)
+                                    .requestMatchers("/api/auth/**", "/auth/login", "/auth/refresh", "/.well-known/jwks.json")
                                     .permitAll()
                                     .anyRequest()
                                     .authenticated()
@@ -0,0 +1,87 @@
+package com.lucumasystems.authenticationapi;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of requests in progress when requests run on virtual threads.
+ * <p>
+ * With platform threads the size of Tomcat's pool bounds concurrency. Virtual threads remove that bound, so a
+ * burst would otherwise become thousands of threads queued on the Hikari pool until its connection timeout.
+ * A request waits up to {@code request-admission.max-wait} for a permit and is otherwise rejected with 503 and
+ * {@code Retry-After} before any token or database work is done. The limit should be a small multiple of
+ * {@code spring.datasource.hikari.maximum-pool-size}.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+@Slf4j
+public class RequestAdmissionFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+    private final Counter rejected;
+
+    public RequestAdmissionFilter(@Value("${request-admission.max-concurrent:100}") int maxConcurrent,
+                                  @Value("${request-admission.max-wait:PT1S}") Duration maxWait,
+                                  @Value("${request-admission.retry-after:PT1S}") Duration retryAfter,
+                                  MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+        this.rejected = Counter.builder("http.admission.rejected").register(meterRegistry);
+        Gauge.builder("http.admission.in.flight", permits, semaphore -> maxConcurrent - semaphore.availablePermits()).register(meterRegistry);
+        log.info("Virtual threads enabled, admitting at most {} concurrent requests", maxConcurrent);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        boolean admitted;
+        try {
+            admitted = permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server busy");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
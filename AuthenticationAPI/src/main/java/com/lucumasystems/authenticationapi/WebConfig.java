@@ -0,0 +1,20 @@
+package com.lucumasystems.authenticationapi;
+
+import com.lucumasystems.authenticationapi.security.VerifiedTokenArgumentResolver;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+    private final VerifiedTokenArgumentResolver verifiedTokenArgumentResolver;
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(verifiedTokenArgumentResolver);
+    }
+}
@@ -1,11 +1,14 @@
 package com.lucumasystems.authenticationapi.controller;
 
 import com.lucumasystems.authenticationapi.ResponseHolder;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
 import com.lucumasystems.authenticationapi.entity.User;
 import com.lucumasystems.authenticationapi.orm.Mapper;
+import com.lucumasystems.authenticationapi.security.LoginThrottle;
 import com.lucumasystems.authenticationapi.service.AuditLogService;
-import com.lucumasystems.authenticationapi.service.JwtService;
+import com.lucumasystems.authenticationapi.service.SigningKeyService;
 import com.lucumasystems.authenticationapi.service.UserService;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -19,52 +22,91 @@ import java.util.List;
 public class Admin {
     private final UserService userService;
     private final AuditLogService auditLogService;
-    private final JwtService jwtService;
+    private final SigningKeyService signingKeyService;
+    private final LoginThrottle loginThrottle;
 
     @Data
     public static class AssignRoles{
         private List<String> data;
     }
 
+    @Data
+    public static class SigningKeyRequest {
+        private String keyId;
+        private String secret;
+    }
+
     @PostMapping("/assign-roles/{userId}")
-    public ResponseEntity<ResponseHolder> assignRolesToUser(@PathVariable Long userId, @RequestBody AssignRoles roleNames, @RequestHeader("Authorization") String token) {
-        token = jwtService.extractTokenFromHeader(token);
-        long updatedBy = jwtService.getUserId(token);
+    public ResponseEntity<ResponseHolder> assignRolesToUser(@PathVariable Long userId, @RequestBody AssignRoles roleNames, VerifiedToken token) {
+        long updatedBy = token.getUserId();
         User user = userService.assignRolesToUser(userId, roleNames.getData(), updatedBy);
         return ResponseEntity.ok(ResponseHolder.builder().message("Roles assigned successfully").response(Mapper.toUserOutDto(user)).build());
     }
 
     @PostMapping("/remove-roles/{userId}")
-    public ResponseEntity<ResponseHolder> removeRolesFromUser(@PathVariable Long userId, @RequestBody AssignRoles roleNames, @RequestHeader("Authorization") String token) {
-        token = jwtService.extractTokenFromHeader(token);
-        long updatedBy = jwtService.getUserId(token);
+    public ResponseEntity<ResponseHolder> removeRolesFromUser(@PathVariable Long userId, @RequestBody AssignRoles roleNames, VerifiedToken token) {
+        long updatedBy = token.getUserId();
         User user = userService.removeRolesFromUser(userId, roleNames.getData(), updatedBy);
         return ResponseEntity.ok(ResponseHolder.builder().message("Roles removed successfully").response(Mapper.toUserOutDto(user)).build());
     }
 
     @PutMapping("/deactivate/{userId}")
-    public ResponseEntity<ResponseHolder> deactivateUser(@PathVariable Long userId, @RequestHeader("Authorization") String token) {
-        token = jwtService.extractTokenFromHeader(token);
-        long updatedBy = jwtService.getUserId(token);
+    public ResponseEntity<ResponseHolder> deactivateUser(@PathVariable Long userId, VerifiedToken token) {
+        long updatedBy = token.getUserId();
         userService.deactivateUser(userId, updatedBy);
 
         // Log the deactivation action
-        auditLogService.logAction("Admin", "DEACTIVATE_USER");
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.DEACTIVATE_USER, userId);
 
         return ResponseEntity.ok(ResponseHolder.builder().message("User deactivated successfully").build());
     }
 
     @PutMapping("/activate/{userId}")
-    public ResponseEntity<ResponseHolder> activateUser(@PathVariable Long userId, @RequestHeader("Authorization") String token) {
-        token = jwtService.extractTokenFromHeader(token);
-        long updatedBy = jwtService.getUserId(token);
+    public ResponseEntity<ResponseHolder> activateUser(@PathVariable Long userId, VerifiedToken token) {
+        long updatedBy = token.getUserId();
         userService.activateUser(userId, updatedBy);
 
         // Log the activation action
-        auditLogService.logAction("Admin", "ACTIVATE_USER");
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.ACTIVATE_USER, userId);
 
         return ResponseEntity.ok(ResponseHolder.builder().message("User activated successfully").build());
     }
 
+    @PutMapping("/unlock/{userId}")
+    public ResponseEntity<ResponseHolder> unlockUser(@PathVariable Long userId, VerifiedToken token) {
+        User user = userService.unlockAccount(userId, token.getUserId());
+        loginThrottle.reset(user.getUsername());
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.UNLOCK_USER, user.getId());
+        return ResponseEntity.ok(ResponseHolder.builder().message("User unlocked successfully").response(Mapper.toUserOutDto(user)).build());
+    }
+
+    @GetMapping("/login-throttle")
+    public ResponseEntity<ResponseHolder> loginThrottleState(@RequestParam(required = false) String username,
+                                                             @RequestParam(required = false) String address) {
+        return ResponseEntity.ok(ResponseHolder.builder().message("Login throttle state").response(loginThrottle.state(username, address)).build());
+    }
+
+    @PostMapping("/signing-keys")
+    public ResponseEntity<ResponseHolder> rotateSigningKey(@RequestBody SigningKeyRequest request, VerifiedToken token) {
+        try {
+            signingKeyService.rotate(request.getKeyId(), request.getSecret());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ResponseHolder.builder().message(e.getMessage()).build());
+        }
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.ROTATE_SIGNING_KEY);
+        return ResponseEntity.ok(ResponseHolder.builder().message("Signing key rotated successfully").response(signingKeyService.keyIds()).build());
+    }
+
+    @DeleteMapping("/signing-keys/{keyId}")
+    public ResponseEntity<ResponseHolder> retireSigningKey(@PathVariable String keyId, VerifiedToken token) {
+        try {
+            signingKeyService.retire(keyId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ResponseHolder.builder().message(e.getMessage()).build());
+        }
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.RETIRE_SIGNING_KEY);
+        return ResponseEntity.ok(ResponseHolder.builder().message("Signing key retired successfully").response(signingKeyService.keyIds()).build());
+    }
+
 
 }
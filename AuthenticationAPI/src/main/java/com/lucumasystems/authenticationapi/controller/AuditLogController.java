@@ -0,0 +1,145 @@
+package com.lucumasystems.authenticationapi.controller;
+
+import com.lucumasystems.authenticationapi.ResponseHolder;
+import com.lucumasystems.authenticationapi.dto.AuditLogPage;
+import com.lucumasystems.authenticationapi.dto.AuditRollupSeries;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
+import com.lucumasystems.authenticationapi.service.AuditLogExporter;
+import com.lucumasystems.authenticationapi.service.AuditLogService;
+import com.lucumasystems.authenticationapi.service.AuditRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/audit-logs")
+@RequiredArgsConstructor
+public class AuditLogController {
+    private final AuditLogService auditLogService;
+    private final AuditLogExporter auditLogExporter;
+    private final AuditRollupService auditRollupService;
+
+    /**
+     * Search the audit log, newest first.
+     *
+     * @param username Only entries of this user.
+     * @param action   Only entries of this action.
+     * @param from     Only entries logged at or after this time.
+     * @param to       Only entries logged before this time.
+     * @param cursor   The nextCursor of the previous page; omit for the first page.
+     * @param limit    The page size.
+     * @return A standardized response with the page and the cursor of the next one.
+     */
+    @GetMapping
+    public ResponseEntity<ResponseHolder> search(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            AuditLogPage page = auditLogService.search(username, action, from, to, cursor, limit);
+            return ResponseEntity.ok(ResponseHolder.builder().message("Audit logs retrieved successfully.").response(page).build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ResponseHolder.builder().message(e.getMessage()).build());
+        }
+    }
+
+    /**
+     * Action counts per minute, hour or day, read from the rollups instead of the log itself.
+     *
+     * @param action      Only this action.
+     * @param username    Counts of this user, for actions counted per user; omit for all users together.
+     * @param from        Start of the range, inclusive.
+     * @param to          End of the range, exclusive.
+     * @param granularity minute, hour or day.
+     * @return A standardized response with one point per bucket and action, oldest first, and whether the range
+     * held more points than the limit.
+     */
+    @GetMapping("/rollups")
+    public ResponseEntity<ResponseHolder> rollups(
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String username,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "minute") String granularity) {
+        try {
+            AuditRollupSeries series = auditRollupService.query(action, username, from, to, granularity);
+            return ResponseEntity.ok(ResponseHolder.builder().message("Audit rollups retrieved successfully.").response(series).build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ResponseHolder.builder().message(e.getMessage()).build());
+        }
+    }
+
+    /**
+     * Export every matching audit log entry, oldest first, streamed as it is read from the database.
+     *
+     * @param format   ndjson or csv.
+     * @param username Only entries of this user.
+     * @param action   Only entries of this action.
+     * @param from     Only entries logged at or after this time.
+     * @param to       Only entries logged before this time.
+     * @param jwtToken The JWT token of the user making the request.
+     * @return The export as an attachment.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            VerifiedToken jwtToken) {
+        AuditLogExporter.Format exportFormat;
+        AuditAction exportAction;
+        try {
+            exportFormat = AuditLogExporter.Format.valueOf(format.toUpperCase());
+            exportAction = AuditAction.parse(action);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Answered with 503 by GlobalExceptionHandler when every slot is taken
+        AuditLogExporter.Slot slot = auditLogExporter.reserve();
+        auditLogService.logAction(jwtToken.getUserId(), jwtToken.getUsername(), AuditAction.EXPORT_AUDIT_LOGS);
+        MediaType mediaType = exportFormat == AuditLogExporter.Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.parseMediaType("application/x-ndjson");
+        String filename = "audit-log-" + LocalDate.now() + "." + exportFormat.name().toLowerCase();
+        StreamingResponseBody body = out -> {
+            try (slot) {
+                auditLogExporter.export(exportFormat, username, exportAction, from, to, out);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Delete every audit log entry logged before the given time.
+     *
+     * @param before   The cutoff time.
+     * @param jwtToken The JWT token of the user making the request.
+     * @return A standardized response with the number of dropped partitions and deleted entries.
+     */
+    @DeleteMapping
+    public ResponseEntity<ResponseHolder> deleteBefore(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            VerifiedToken jwtToken) {
+        AuditLogService.Purge deleted = auditLogService.deleteLogsBeforeDate(before);
+        auditLogService.logAction(jwtToken.getUserId(), jwtToken.getUsername(), AuditAction.DELETE_AUDIT_LOGS);
+        return ResponseEntity.ok(ResponseHolder.builder().message("Audit logs deleted successfully.").response(deleted).build());
+    }
+}
@@ -4,15 +4,17 @@ import com.lucumasystems.authenticationapi.ResponseHolder;
 import com.lucumasystems.authenticationapi.dto.JwtResponse;
 import com.lucumasystems.authenticationapi.dto.LoginDto;
 import com.lucumasystems.authenticationapi.dto.UserDTO;
-import com.lucumasystems.authenticationapi.entity.Permission;
-import com.lucumasystems.authenticationapi.entity.Role;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
+import com.lucumasystems.authenticationapi.error.HashingCapacityExceededException;
 import com.lucumasystems.authenticationapi.entity.User;
 import com.lucumasystems.authenticationapi.orm.Mapper;
-import com.lucumasystems.authenticationapi.orm.UserRepository;
 import com.lucumasystems.authenticationapi.service.AuditLogService;
 import com.lucumasystems.authenticationapi.service.JwtService;
+import com.lucumasystems.authenticationapi.service.LoginService;
 import com.lucumasystems.authenticationapi.service.UserService;
-import jakarta.persistence.EntityNotFoundException;
+import com.lucumasystems.authenticationapi.security.LoginThrottle;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Pattern;
 import lombok.Data;
@@ -21,14 +23,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @RestController
@@ -36,90 +36,114 @@ import java.util.Map;
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class AuthenticationController {
     private final UserService userService;
-    private final UserRepository userRepository;
     private final AuditLogService auditLogService;
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
+    private final LoginService loginService;
+    private final LoginThrottle loginThrottle;
 
 
 
     @PostMapping("/login")
-    public ResponseEntity<ResponseHolder> login(@RequestBody LoginDto loginDto) {
+    public ResponseEntity<ResponseHolder> login(@RequestBody LoginDto loginDto, HttpServletRequest request) {
+        String clientAddress = request.getRemoteAddr();
+        // Rejects before any password is hashed
+        loginThrottle.checkAllowed(loginDto.getUsername(), clientAddress);
         try {
             log.info("Log in request {}", loginDto);
             Authentication authentication = authenticationManager
                     .authenticate(new UsernamePasswordAuthenticationToken(loginDto.getUsername(), loginDto.getPassword()));
             log.info("Authenticated user {}", authentication.getName() +" "+ authentication.getAuthorities());
-            User user = userRepository.findActiveUserByUsername(loginDto.getUsername()).orElseThrow(()->new EntityNotFoundException("User not found"));
-            List<String> roles = user.getRoles().stream().map(Role::getName).toList();
-            List<String> permissions = user.getRoles().stream().flatMap(role -> role.getPermissions().stream()).map(Permission::getName).toList();
-            Map<String, Object> claims = new HashMap<>();
-            claims.put("username", user.getUsername());
-            claims.put("role", roles);
-            claims.put("permissions", permissions);
-            claims.put("userId", user.getId());
-            String token = jwtService.generate(claims, user, JwtService.getDate(3, 'H'));
-            JwtResponse response = JwtResponse.builder()
-                    .permissions(permissions)
-                    .roles(roles)
-                    .token(token)
-                    .build();
-
-            // Log the successful login action
-            auditLogService.logAction(user.getUsername(), "LOGIN");
+            loginThrottle.recordSuccess(loginDto.getUsername());
+            // The principal was loaded with roles and permissions by UserService.loadUserByUsername
+            JwtResponse response = loginService.completeLogin((User) authentication.getPrincipal());
 
             return ResponseEntity.ok(ResponseHolder.builder().message("Login Successful").response(response).build());
+        } catch (InternalAuthenticationServiceException e) {
+            // Raised while looking the user up, which also hashes to hide whether the user exists
+            if (e.getCause() instanceof HashingCapacityExceededException overloaded) {
+                throw overloaded;
+            }
+            log.error("Error ", e);
+            return ResponseEntity.ok(ResponseHolder.builder().message("Invalid username or password").build());
         } catch (AuthenticationException e) {
             log.error("Error ", e);
+            recordFailedLogin(loginDto.getUsername(), clientAddress);
             return ResponseEntity.ok(ResponseHolder.builder().message("Invalid username or password").build());
         }
     }
 
+    private void recordFailedLogin(String username, String clientAddress) {
+        auditLogService.logAction(null, username, AuditAction.FAILED_ATTEMPT);
+        if (loginThrottle.recordFailure(username, clientAddress) && userService.lockAccount(username)) {
+            auditLogService.logAction(null, username, AuditAction.ACCOUNT_LOCKED);
+        }
+    }
+
+    /**
+     * Renew a session with its refresh token instead of the password. The refresh token is replaced on every
+     * call, so the client must keep the one returned.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<ResponseHolder> refresh(@RequestBody RefreshRequest refreshRequest) {
+        JwtResponse response = loginService.refresh(refreshRequest.getRefreshToken());
+        return ResponseEntity.ok(ResponseHolder.builder().message("Token Refreshed").response(response).build());
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<ResponseHolder> logout(VerifiedToken token) {
+        jwtService.revokeSessions(token.getUserId());
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.LOGOUT);
+        return ResponseEntity.ok(ResponseHolder.builder().message("Logout Successful").build());
+    }
+
     @PostMapping("/self-register")
     public ResponseEntity<ResponseHolder> selfRegister(@RequestBody UserDTO userDTO) {
         User user = userService.addUser(userDTO, 0);
-        auditLogService.logAction(user.getUsername(), "SELF_REGISTER");
+        auditLogService.logAction(user.getId(), user.getUsername(), AuditAction.SELF_REGISTER);
 
         return ResponseEntity.ok(ResponseHolder.builder().message("Self Registration Successful").response(Mapper.toUserOutDto(user)).build());
     }
 
     @PostMapping("/register")
-    public ResponseEntity<ResponseHolder> register(@RequestBody UserDTO userDTO, @RequestHeader("Authorization") String token) {
-        token = jwtService.extractTokenFromHeader(token);
-        int userId = jwtService.getUserId(token);
+    public ResponseEntity<ResponseHolder> register(@RequestBody UserDTO userDTO, VerifiedToken token) {
+        long userId = token.getUserId();
         User user = userService.addUser(userDTO, userId);
 
         // Log the registration action
-        auditLogService.logAction(user.getUsername(), "REGISTER");
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.REGISTER, user.getId());
 
         return ResponseEntity.ok(ResponseHolder.builder().message("Registration Successful").response(Mapper.toUserOutDto(user)).build());
     }
 
     @PostMapping("/update")
-    public ResponseEntity<ResponseHolder> update(@RequestParam("username") String username, @RequestBody UserDTO userDTO, @RequestHeader("Authorization") String token) {
-        token = jwtService.getUsername(token);
-        int userId = jwtService.getUserId(token);
+    public ResponseEntity<ResponseHolder> update(@RequestParam("username") String username, @RequestBody UserDTO userDTO, VerifiedToken token) {
+        long userId = token.getUserId();
         User user = userService.updateUser(userDTO, userId, username);
 
         // Log the update action
-        auditLogService.logAction(user.getUsername(), "UPDATE");
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.UPDATE, user.getId());
 
         return ResponseEntity.ok(ResponseHolder.builder().message("Update Successful").response(Mapper.toUserOutDto(user)).build());
     }
 
     @PutMapping("/reset-password")
-    public ResponseEntity<ResponseHolder> resetPassword(@RequestParam @Valid ResetPassword resetPassword, @RequestHeader("Authorization") String token) {
-        token = jwtService.extractTokenFromHeader(token);
-        long updatedBy = jwtService.getUserId(token);
+    public ResponseEntity<ResponseHolder> resetPassword(@RequestParam @Valid ResetPassword resetPassword, VerifiedToken token) {
+        long updatedBy = token.getUserId();
         User user = userService.resetPassword(resetPassword.getUsername(), resetPassword.getPassword(), updatedBy);
 
         // Log the password reset action
-        auditLogService.logAction(user.getUsername(), "RESET_PASSWORD");
+        auditLogService.logAction(token.getUserId(), token.getUsername(), AuditAction.RESET_PASSWORD, user.getId());
 
         return ResponseEntity.ok(ResponseHolder.builder().message("Password reset successfully").response(Mapper.toUserOutDto(user)).build());
     }
 
 
+    @Data
+    public static class RefreshRequest {
+        private String refreshToken;
+    }
+
     @Data
     public static class ResetPassword {
         private String username;
@@ -1,8 +1,13 @@
 package com.lucumasystems.authenticationapi.controller;
 
+import com.lucumasystems.authenticationapi.error.ExportCapacityExceededException;
+import com.lucumasystems.authenticationapi.error.HashingCapacityExceededException;
+import com.lucumasystems.authenticationapi.error.InvalidRefreshTokenException;
+import com.lucumasystems.authenticationapi.error.LoginThrottledException;
 import com.lucumasystems.authenticationapi.error.PermissionAlreadyExistsException;
 import com.lucumasystems.authenticationapi.error.PermissionNotFoundException;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -26,4 +31,30 @@ public class GlobalExceptionHandler {
     public ResponseEntity<Map<String, String>> handleEntityNotFoundException(EntityNotFoundException ex) {
         return new ResponseEntity<>(Map.of("message", ex.getMessage()), HttpStatus.NOT_FOUND);
     }
+
+    @ExceptionHandler(HashingCapacityExceededException.class)
+    public ResponseEntity<Map<String, String>> handleHashingCapacityExceededException(HashingCapacityExceededException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(Map.of("message", ex.getMessage()));
+    }
+
+    @ExceptionHandler(ExportCapacityExceededException.class)
+    public ResponseEntity<Map<String, String>> handleExportCapacityExceededException(ExportCapacityExceededException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(Map.of("message", ex.getMessage()));
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<Map<String, String>> handleLoginThrottledException(LoginThrottledException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(Map.of("message", ex.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRefreshTokenException(InvalidRefreshTokenException ex) {
+        return new ResponseEntity<>(Map.of("message", ex.getMessage()), HttpStatus.UNAUTHORIZED);
+    }
 }
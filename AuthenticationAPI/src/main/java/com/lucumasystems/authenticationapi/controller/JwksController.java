@@ -0,0 +1,33 @@
+package com.lucumasystems.authenticationapi.controller;
+
+import com.lucumasystems.authenticationapi.security.SigningKeyRing;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Publishes the public token verification keys as a JWK set (RFC 7517), so other services can verify tokens
+ * locally instead of calling {@code /authenticate/token}. The body is the standard JWK set document rather than
+ * a {@code ResponseHolder}, since JWT libraries consume it directly.
+ */
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+    private final SigningKeyRing signingKeyRing;
+
+    @Value("${token.jwks.max-age:PT15M}")
+    private Duration maxAge;
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(maxAge).cachePublic())
+                .body(Map.of("keys", signingKeyRing.publicJwks()));
+    }
+}
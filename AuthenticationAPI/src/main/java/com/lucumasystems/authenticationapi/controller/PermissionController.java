@@ -3,11 +3,12 @@ package com.lucumasystems.authenticationapi.controller;
 import com.lucumasystems.authenticationapi.ResponseHolder;
 import com.lucumasystems.authenticationapi.dto.PermissionOutDto;
 import com.lucumasystems.authenticationapi.dto.PermissionsDTO;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
 import com.lucumasystems.authenticationapi.service.PermissionService;
 import com.lucumasystems.authenticationapi.service.AuditLogService;
-import com.lucumasystems.authenticationapi.service.JwtService;
 import com.lucumasystems.authenticationapi.error.PermissionAlreadyExistsException;
 import com.lucumasystems.authenticationapi.error.PermissionNotFoundException;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,7 +25,6 @@ public class PermissionController {
 
     private final PermissionService permissionService;
     private final AuditLogService auditLogService;
-    private final JwtService jwtService;
 
     /**
      * Add a new permission.
@@ -34,12 +34,11 @@ public class PermissionController {
      * @return A standardized response with the added permission.
      */
     @PostMapping("/add")
-    public ResponseEntity<ResponseHolder> addPermission(@RequestBody @Valid PermissionsDTO permissionsDTO, @RequestHeader("Authorization") String jwtToken) {
-        jwtToken = jwtService.extractTokenFromHeader(jwtToken);
+    public ResponseEntity<ResponseHolder> addPermission(@RequestBody @Valid PermissionsDTO permissionsDTO, VerifiedToken jwtToken) {
         try {
-            int createdBy = jwtService.getUserId(jwtToken);
+            int createdBy = (int) jwtToken.getUserId();
             PermissionOutDto permission = permissionService.addPermission(permissionsDTO, createdBy);
-            auditLogService.logAction(jwtService.getUsername(jwtToken), "ADD_PERMISSION");
+            auditLogService.logAction(jwtToken.getUserId(), jwtToken.getUsername(), AuditAction.ADD_PERMISSION);
             return ResponseEntity.ok(
                     ResponseHolder.builder()
                             .response(permission)
@@ -70,13 +69,11 @@ public class PermissionController {
      * @return A standardized response with the updated permission.
      */
     @PutMapping("/{permissionId}/status")
-    public ResponseEntity<ResponseHolder> changePermissionStatus(@PathVariable int permissionId, @RequestHeader("Authorization") String jwtToken) {
-        jwtToken = jwtService.extractTokenFromHeader(jwtToken);
-
+    public ResponseEntity<ResponseHolder> changePermissionStatus(@PathVariable int permissionId, VerifiedToken jwtToken) {
         try {
-            int updatedBy = jwtService.getUserId(jwtToken);
+            int updatedBy = (int) jwtToken.getUserId();
             PermissionOutDto permission = permissionService.changePermissionStatus(permissionId, updatedBy);
-            auditLogService.logAction(jwtService.getUsername(jwtToken), "CHANGE_PERMISSION_STATUS");
+            auditLogService.logAction(jwtToken.getUserId(), jwtToken.getUsername(), AuditAction.CHANGE_PERMISSION_STATUS);
             return ResponseEntity.ok(
                     ResponseHolder.builder()
                             .response(permission)
@@ -107,12 +104,11 @@ public class PermissionController {
      * @return A standardized response with the updated permission.
      */
     @PutMapping("/{permissionId}")
-    public ResponseEntity<ResponseHolder> updatePermission(@PathVariable int permissionId, @RequestBody @Valid PermissionsDTO permissionsDTO, @RequestHeader("Authorization") String jwtToken) {
-        jwtToken = jwtService.extractTokenFromHeader(jwtToken);
+    public ResponseEntity<ResponseHolder> updatePermission(@PathVariable int permissionId, @RequestBody @Valid PermissionsDTO permissionsDTO, VerifiedToken jwtToken) {
         try {
-            int updatedBy = jwtService.getUserId(jwtToken);
+            int updatedBy = (int) jwtToken.getUserId();
             PermissionOutDto permission = permissionService.updatePermission(permissionId, permissionsDTO, updatedBy);
-            auditLogService.logAction(jwtService.getUsername(jwtToken), "UPDATE_PERMISSION");
+            auditLogService.logAction(jwtToken.getUserId(), jwtToken.getUsername(), AuditAction.UPDATE_PERMISSION);
             return ResponseEntity.ok(
                     ResponseHolder.builder()
                             .response(permission)
@@ -3,10 +3,11 @@ package com.lucumasystems.authenticationapi.controller;
 import com.lucumasystems.authenticationapi.ResponseHolder;
 import com.lucumasystems.authenticationapi.dto.RoleDto;
 import com.lucumasystems.authenticationapi.dto.UserOutDto;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
 import com.lucumasystems.authenticationapi.entity.Role;
 import com.lucumasystems.authenticationapi.service.AuditLogService;
-import com.lucumasystems.authenticationapi.service.JwtService;
 import com.lucumasystems.authenticationapi.service.RoleService;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
@@ -22,7 +23,6 @@ import java.util.List;
 @RequiredArgsConstructor
 public class RoleController {
     private final RoleService roleService;
-    private final JwtService jwtService;
     private final AuditLogService auditLogService;
     /**
      * Add a new role.
@@ -32,12 +32,11 @@ public class RoleController {
      * @return A standardized response with the added role.
      */
     @PostMapping
-    public ResponseEntity<ResponseHolder> addRole(@RequestBody @Valid RoleDto roleDto, @RequestHeader("Authorization") String jwtToken) {
-        jwtToken = jwtService.extractTokenFromHeader(jwtToken);
+    public ResponseEntity<ResponseHolder> addRole(@RequestBody @Valid RoleDto roleDto, VerifiedToken jwtToken) {
         try {
-            int createdBy = jwtService.getUserId(jwtToken);
+            int createdBy = (int) jwtToken.getUserId();
             roleService.addRole(roleDto, createdBy);
-            auditLogService.logAction(jwtService.getUsername(jwtToken), "ADD_ROLE");
+            auditLogService.logAction(jwtToken.getUserId(), jwtToken.getUsername(), AuditAction.ADD_ROLE);
             return ResponseEntity.ok(
                     ResponseHolder.builder()
                             .message("Role added successfully.")
@@ -70,12 +69,11 @@ public class RoleController {
     public ResponseEntity<ResponseHolder> addPermissionsToRole(
             @PathVariable String roleName,
             @RequestBody List<String> permissionNames,
-            @RequestHeader("Authorization") String jwtToken) {
-        jwtToken = jwtService.extractTokenFromHeader(jwtToken);
+            VerifiedToken jwtToken) {
         try {
-            int updatedBy = jwtService.getUserId(jwtToken);
+            int updatedBy = (int) jwtToken.getUserId();
             roleService.addPermissionToRole(roleName, updatedBy, permissionNames);
-            auditLogService.logAction(jwtService.getUsername(jwtToken), "ADD_PERMISSIONS_TO_ROLE");
+            auditLogService.logAction(jwtToken.getUserId(), jwtToken.getUsername(), AuditAction.ADD_PERMISSIONS_TO_ROLE);
             return ResponseEntity.ok(
                     ResponseHolder.builder()
                             .message("Permissions added to role successfully.")
@@ -104,12 +102,11 @@ public class RoleController {
      * @return A standardized response with the updated role.
      */
     @PutMapping("/{roleName}/status")
-    public ResponseEntity<ResponseHolder> changeRoleStatus(@PathVariable String roleName, @RequestHeader("Authorization") String jwtToken) {
-        jwtToken = jwtService.extractTokenFromHeader(jwtToken);
+    public ResponseEntity<ResponseHolder> changeRoleStatus(@PathVariable String roleName, VerifiedToken jwtToken) {
         try {
-            int updatedBy = jwtService.getUserId(jwtToken);
+            int updatedBy = (int) jwtToken.getUserId();
             roleService.changeRoleStatus(roleName, updatedBy);
-            auditLogService.logAction(jwtService.getUsername(jwtToken), "CHANGE_ROLE_STATUS");
+            auditLogService.logAction(jwtToken.getUserId(), jwtToken.getUsername(), AuditAction.CHANGE_ROLE_STATUS);
             return ResponseEntity.ok(
                     ResponseHolder.builder()
                             .message("Role status updated successfully.")
@@ -4,28 +4,51 @@ import com.lucumasystems.authenticationapi.ResponseHolder;
 import com.lucumasystems.authenticationapi.entity.User;
 import com.lucumasystems.authenticationapi.orm.Mapper;
 import com.lucumasystems.authenticationapi.orm.UserRepository;
-import com.lucumasystems.authenticationapi.service.JwtService;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
+import com.lucumasystems.authenticationapi.service.TokenIntrospectionService;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/authenticate")
 @RequiredArgsConstructor
 public class TokenAuthenticate {
-    private final JwtService jwtService;
     private final UserRepository userRepository;
+    private final TokenIntrospectionService tokenIntrospectionService;
+
+    @Value("${introspection.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Data
+    public static class TokenBatch {
+        private List<String> tokens;
+    }
 
     @PostMapping("/token")
-    public ResponseEntity<ResponseHolder> authenticate(@RequestHeader("Authorization") String token) {
-        token = jwtService.extractTokenFromHeader(token);
-        User user = userRepository.findActiveUserByUsername(jwtService.getUsername(token)).orElse(null);
+    public ResponseEntity<ResponseHolder> authenticate(VerifiedToken token) {
+        User user = userRepository.findActiveUserByUsername(token.getUsername()).orElse(null);
         if (user == null) {
             return ResponseEntity.notFound().build();
         }
         return ResponseEntity.ok(ResponseHolder.builder().message("Authenticated").response(Mapper.toUserOutDto(user)).build());
     }
+
+    @PostMapping("/tokens")
+    public ResponseEntity<ResponseHolder> introspect(@RequestBody TokenBatch batch) {
+        if (batch.getTokens() == null || batch.getTokens().isEmpty()) {
+            return ResponseEntity.badRequest().body(ResponseHolder.builder().message("No tokens to introspect").build());
+        }
+        if (batch.getTokens().size() > maxBatchSize) {
+            return ResponseEntity.badRequest().body(ResponseHolder.builder().message("At most " + maxBatchSize + " tokens per request").build());
+        }
+        return ResponseEntity.ok(ResponseHolder.builder().message("Introspected").response(tokenIntrospectionService.introspect(batch.getTokens())).build());
+    }
 }
@@ -0,0 +1,22 @@
+package com.lucumasystems.authenticationapi.dto;
+
+import com.lucumasystems.authenticationapi.entity.AuditLog;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a keyset scan over the audit log, newest first. {@code nextCursor} fetches the following page
+ * and is null on the last one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditLogPage {
+    private List<AuditLog> items;
+    private String nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.lucumasystems.authenticationapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Number of times an action was logged in one time bucket, for all users or for one user.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AuditRollupPoint {
+    private LocalDateTime bucket;
+    private String action;
+    private String username;
+    private long count;
+}
@@ -0,0 +1,21 @@
+package com.lucumasystems.authenticationapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Rollup points oldest first. {@code truncated} is true when the range held more points than the limit; the
+ * points then stop at a bucket boundary, and a query starting after the last bucket returns the rest.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditRollupSeries {
+    private List<AuditRollupPoint> points;
+    private boolean truncated;
+}
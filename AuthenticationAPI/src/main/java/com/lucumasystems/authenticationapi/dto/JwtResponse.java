@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
@@ -13,6 +14,8 @@ import java.util.List;
 @Builder
 public class JwtResponse {
     private String token;
+    private String refreshToken;
+    private LocalDateTime refreshTokenExpiresAt;
     private List<String> roles;
     private List<String> permissions;
 }
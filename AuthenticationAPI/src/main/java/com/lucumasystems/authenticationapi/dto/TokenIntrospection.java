@@ -0,0 +1,35 @@
+package com.lucumasystems.authenticationapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Introspection result for one token, shaped after RFC 7662: an inactive token carries nothing but
+ * {@code active=false}.
+ * <p>
+ * Immutable, so the shared {@link #INACTIVE} result cannot be altered by one caller under another.
+ */
+@Value
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIntrospection {
+
+    public static final TokenIntrospection INACTIVE = TokenIntrospection.builder().active(false).build();
+
+    boolean active;
+    String sub;
+    String username;
+    @JsonProperty("user_id")
+    Long userId;
+    @JsonProperty("token_type")
+    String tokenType;
+    Long exp;
+    Long iat;
+    String jti;
+    List<String> roles;
+    List<String> permissions;
+}
@@ -0,0 +1,69 @@
+package com.lucumasystems.authenticationapi.entity;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * Actions recorded in the audit log, stored as a smallint code.
+ * <p>
+ * The codes are persisted: never change or reuse one, only add new constants with new codes. schema.sql maps the
+ * names stored before codes were introduced to the same numbers.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum AuditAction {
+    UNKNOWN(0),
+    LOGIN(1),
+    LOGOUT(2),
+    FAILED_ATTEMPT(3),
+    ACCOUNT_LOCKED(4),
+    REFRESH_TOKEN_REUSE(5),
+    SELF_REGISTER(6),
+    REGISTER(7),
+    UPDATE(8),
+    RESET_PASSWORD(9),
+    DEACTIVATE_USER(10),
+    ACTIVATE_USER(11),
+    UNLOCK_USER(12),
+    ADD_ROLE(13),
+    ADD_PERMISSIONS_TO_ROLE(14),
+    CHANGE_ROLE_STATUS(15),
+    ADD_PERMISSION(16),
+    CHANGE_PERMISSION_STATUS(17),
+    UPDATE_PERMISSION(18),
+    ROTATE_SIGNING_KEY(19),
+    RETIRE_SIGNING_KEY(20),
+    EXPORT_AUDIT_LOGS(21),
+    DELETE_AUDIT_LOGS(22);
+
+    private static final AuditAction[] BY_CODE = new AuditAction[values().length];
+
+    static {
+        for (AuditAction action : values()) {
+            BY_CODE[action.code] = action;
+        }
+    }
+
+    private final int code;
+
+    public static AuditAction fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length && BY_CODE[code] != null ? BY_CODE[code] : UNKNOWN;
+    }
+
+    /**
+     * @param name An action name in any case, or null.
+     * @return The action, or null for null.
+     * @throws IllegalArgumentException If there is no such action.
+     */
+    public static AuditAction parse(String name) {
+        if (name == null) {
+            return null;
+        }
+        return Arrays.stream(values())
+                .filter(action -> action.name().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown audit action " + name));
+    }
+}
@@ -0,0 +1,29 @@
+package com.lucumasystems.authenticationapi.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Optional context of an audit entry, stored as jsonb with short keys; absent values are left out.
+ *
+ * @param ip           Address the request came from.
+ * @param userAgent    User-Agent header of the request.
+ * @param targetUserId The user the action was performed on, when it is not the acting user.
+ * @param username     The name given by the actor when it matches no user, e.g. a failed login with an unknown
+ *                     username.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AuditDetail(
+        @JsonProperty("ip") String ip,
+        @JsonProperty("ua") String userAgent,
+        @JsonProperty("target") Long targetUserId,
+        @JsonProperty("user") String username) {
+
+    public AuditDetail withUsername(String username) {
+        return new AuditDetail(ip, userAgent, targetUserId, username);
+    }
+
+    public boolean isEmpty() {
+        return ip == null && userAgent == null && targetUserId == null && username == null;
+    }
+}
@@ -2,16 +2,32 @@ package com.lucumasystems.authenticationapi.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = {
+        @Index(name = "idx_audit_log_user_timestamp", columnList = "user_id, timestamp DESC, id DESC"),
+        @Index(name = "idx_audit_log_action_timestamp", columnList = "action, timestamp DESC, id DESC"),
+        @Index(name = "idx_audit_log_timestamp", columnList = "timestamp DESC, id DESC")
+})
 public class AuditLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+    @Column(name = "user_id")
+    private Long userId;
+    // Resolved from user_id when read; set in memory on new entries, never stored
+    @Formula("(SELECT u.username FROM user_details u WHERE u.id = user_id)")
     private String username;
-    private String action; // LOGIN, LOGOUT, FAILED_ATTEMPT
+    @Column(columnDefinition = "smallint")
+    private AuditAction action;
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private AuditDetail detail;
     private LocalDateTime timestamp;
 }
@@ -13,14 +13,30 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = {
+        // Same name as the index schema.sql creates when migrating, so Hibernate does not add a second one
+        @Index(name = "uk_refresh_token_token_hash", columnList = "token_hash", unique = true),
+        @Index(name = "idx_refresh_token_previous_token_hash", columnList = "previous_token_hash"),
+        @Index(name = "idx_refresh_token_expiry_date", columnList = "expiry_date")
+})
 public class RefreshToken {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    @Column(nullable = false, unique = true)
-    private String token;
+    /**
+     * SHA-256 of the refresh token; the token itself is never stored.
+     */
+    @Column(name = "token_hash", nullable = false, length = 32)
+    private byte[] tokenHash;
+    private String jti;
+    /**
+     * SHA-256 of the refresh token this one replaced; presenting it again means it was copied.
+     */
+    @Column(name = "previous_token_hash", length = 32)
+    private byte[] previousTokenHash;
     @OneToOne
+    @JoinColumn(name = "user_id", unique = true)
     private User user;
-    @Column(nullable = false)
+    @Column(name = "expiry_date", nullable = false)
     private LocalDateTime expiryDate;
 }
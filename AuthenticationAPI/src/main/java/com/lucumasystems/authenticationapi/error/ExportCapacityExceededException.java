@@ -0,0 +1,18 @@
+package com.lucumasystems.authenticationapi.error;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Every audit export slot is taken; the request should be retried after {@link #getRetryAfter()}.
+ */
+@Getter
+public class ExportCapacityExceededException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public ExportCapacityExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
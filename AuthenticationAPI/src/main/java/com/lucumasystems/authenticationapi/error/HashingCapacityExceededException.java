@@ -0,0 +1,18 @@
+package com.lucumasystems.authenticationapi.error;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The password hashing executor is saturated; the request should be retried after {@link #getRetryAfter()}.
+ */
+@Getter
+public class HashingCapacityExceededException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public HashingCapacityExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
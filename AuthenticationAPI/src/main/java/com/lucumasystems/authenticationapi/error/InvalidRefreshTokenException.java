@@ -0,0 +1,10 @@
+package com.lucumasystems.authenticationapi.error;
+
+/**
+ * The refresh token is unknown, expired, already used or belongs to a user who may no longer log in.
+ */
+public class InvalidRefreshTokenException extends RuntimeException {
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
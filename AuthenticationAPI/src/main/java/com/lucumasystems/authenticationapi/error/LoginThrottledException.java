@@ -0,0 +1,18 @@
+package com.lucumasystems.authenticationapi.error;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Too many failed logins for the username or the client address; retry after {@link #getRetryAfter()}.
+ */
+@Getter
+public class LoginThrottledException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public LoginThrottledException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
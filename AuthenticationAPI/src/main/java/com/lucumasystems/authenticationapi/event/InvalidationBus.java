@@ -0,0 +1,272 @@
+package com.lucumasystems.authenticationapi.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Carries user, role, permission, session and signing key change events between nodes over Postgres LISTEN/NOTIFY.
+ * <p>
+ * Local change events are sent with {@code pg_notify} inside the transaction that made the change, so Postgres
+ * delivers them only if and when it commits. Every node listens on a dedicated connection outside the pool and
+ * republishes the events of other nodes locally, where the same listeners that handle local changes apply them.
+ * Notifications sent while a node was disconnected are lost, so after a reconnect the node publishes an
+ * {@link InvalidationResyncEvent} and reloads everything it holds in memory.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "invalidation-bus.enabled", havingValue = "true", matchIfMissing = true)
+public class InvalidationBus {
+
+    private static final ThreadLocal<Boolean> APPLYING_REMOTE = ThreadLocal.withInitial(() -> false);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final DataSourceProperties dataSourceProperties;
+    private final String channel;
+    private final Duration pollInterval;
+    private final Duration minReconnectDelay;
+    private final Duration maxReconnectDelay;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Counter published;
+    private final Counter received;
+    private final Counter reconnects;
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Connection connection;
+    private Thread listener;
+
+    public InvalidationBus(JdbcTemplate jdbcTemplate,
+                           ApplicationEventPublisher eventPublisher,
+                           ObjectMapper objectMapper,
+                           DataSourceProperties dataSourceProperties,
+                           @Value("${invalidation-bus.channel:auth_invalidation}") String channel,
+                           @Value("${invalidation-bus.poll-interval:PT5S}") Duration pollInterval,
+                           @Value("${invalidation-bus.min-reconnect-delay:PT0.5S}") Duration minReconnectDelay,
+                           @Value("${invalidation-bus.max-reconnect-delay:PT30S}") Duration maxReconnectDelay,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.dataSourceProperties = dataSourceProperties;
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            // Sent as an identifier in LISTEN, which cannot take a bind parameter
+            throw new IllegalArgumentException("Invalid invalidation channel name " + channel);
+        }
+        this.channel = channel;
+        this.pollInterval = pollInterval;
+        this.minReconnectDelay = minReconnectDelay;
+        this.maxReconnectDelay = maxReconnectDelay;
+        this.published = Counter.builder("invalidation.bus.messages").tag("direction", "published").register(meterRegistry);
+        this.received = Counter.builder("invalidation.bus.messages").tag("direction", "received").register(meterRegistry);
+        this.reconnects = Counter.builder("invalidation.bus.reconnects").register(meterRegistry);
+        Gauge.builder("invalidation.bus.connected", this, bus -> bus.connected ? 1 : 0).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        listener = Thread.ofPlatform().name("invalidation-bus").daemon().start(this::listen);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+        closeQuietly(connection);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        publish(Message.builder().type(Message.USER).userId(event.getUserId()).username(event.getUsername())
+                .version(event.getVersion()).build());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        publish(Message.builder().type(Message.ROLE).roleName(event.getRoleName())
+                .version(event.getVersion()).build());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        publish(Message.builder().type(Message.PERMISSION).permissionId(event.getPermissionId())
+                .version(event.getVersion()).build());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        publish(Message.builder().type(Message.SESSION).userId(event.getUserId()).tokenId(event.getTokenId())
+                .version(System.currentTimeMillis()).build());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onSigningKeysChanged(SigningKeysChangedEvent event) {
+        publish(Message.builder().type(Message.SIGNING_KEYS).version(System.currentTimeMillis()).build());
+    }
+
+    private void publish(Message message) {
+        if (APPLYING_REMOTE.get()) {
+            // Republished from another node; sending it on would echo it back and forth
+            return;
+        }
+        try {
+            // On the transaction's connection, so Postgres holds the notification until the commit
+            jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", Object.class, channel,
+                    objectMapper.writeValueAsString(message.withNode(nodeId)));
+            published.increment();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialise invalidation message", e);
+        }
+    }
+
+    private void listen() {
+        boolean resync = false;
+        long delayMillis = minReconnectDelay.toMillis();
+        while (running) {
+            try (Connection listening = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection = listening;
+                try (Statement statement = listening.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                connected = true;
+                delayMillis = minReconnectDelay.toMillis();
+                log.info("Listening for invalidations on channel {} as node {}", channel, nodeId);
+                if (resync) {
+                    log.info("Reconnected to invalidation channel; reloading in-memory state");
+                    eventPublisher.publishEvent(new InvalidationResyncEvent());
+                }
+                resync = true;
+                PGConnection pgConnection = listening.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollInterval.toMillis());
+                    if (notifications == null || notifications.length == 0) {
+                        if (!listening.isValid((int) Math.max(1, pollInterval.toSeconds()))) {
+                            throw new SQLException("Invalidation connection is no longer valid");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        apply(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                connected = false;
+                reconnects.increment();
+                log.warn("Invalidation channel connection lost, reconnecting in {} ms: {}", delayMillis, e.getMessage());
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                delayMillis = Math.min(delayMillis * 2, maxReconnectDelay.toMillis());
+            }
+        }
+        connected = false;
+    }
+
+    void apply(String payload) {
+        Message message;
+        try {
+            message = objectMapper.readValue(payload, Message.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed invalidation message {}", payload);
+            return;
+        }
+        if (nodeId.equals(message.node())) {
+            return;
+        }
+        received.increment();
+        Object event = switch (message.type() == null ? "" : message.type()) {
+            case Message.USER -> new UserChangedEvent(message.userId(), message.username(), message.version() == null ? 0 : message.version());
+            case Message.ROLE -> message.version() == null ? null : new RoleChangedEvent(message.roleName(), message.version());
+            case Message.PERMISSION -> message.permissionId() == null || message.version() == null ? null
+                    : new PermissionChangedEvent(message.permissionId(), message.version());
+            case Message.SESSION -> message.userId() == null ? null : new SessionChangedEvent(message.userId(), message.tokenId());
+            case Message.SIGNING_KEYS -> new SigningKeysChangedEvent();
+            default -> null;
+        };
+        if (event == null) {
+            log.warn("Ignoring unknown invalidation message {}", payload);
+            return;
+        }
+        APPLYING_REMOTE.set(true);
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            // Keep listening; the entry will be corrected by its TTL or the next change
+            log.error("Could not apply invalidation message {}", payload, e);
+        } finally {
+            APPLYING_REMOTE.remove();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Error closing invalidation connection", e);
+        }
+    }
+
+    @Builder(toBuilder = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Message(String node,
+                   String type,
+                   Long userId,
+                   String username,
+                   String roleName,
+                   Integer permissionId,
+                   String tokenId,
+                   Long version) {
+        static final String USER = "user";
+        static final String ROLE = "role";
+        static final String PERMISSION = "permission";
+        static final String SESSION = "session";
+        static final String SIGNING_KEYS = "signing-keys";
+
+        Message withNode(String node) {
+            return toBuilder().node(node).build();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.lucumasystems.authenticationapi.event;
+
+/**
+ * Published when change events from other nodes may have been missed, e.g. after the invalidation bus lost its
+ * connection; every in-memory view of users, roles, permissions and sessions must be reloaded.
+ */
+public class InvalidationResyncEvent {
+}
@@ -0,0 +1,13 @@
+package com.lucumasystems.authenticationapi.event;
+
+import lombok.Value;
+
+/**
+ * Published after a permission was created, renamed, activated or deactivated.
+ */
+@Value
+public class PermissionChangedEvent {
+    int permissionId;
+    /** The RBAC version the change was committed with, see {@link com.lucumasystems.authenticationapi.security.AuthzVersions}. */
+    long version;
+}
@@ -0,0 +1,13 @@
+package com.lucumasystems.authenticationapi.event;
+
+import lombok.Value;
+
+/**
+ * Published after a role was activated, deactivated or had its permissions changed.
+ */
+@Value
+public class RoleChangedEvent {
+    String roleName;
+    /** The RBAC version the change was committed with, see {@link com.lucumasystems.authenticationapi.security.AuthzVersions}. */
+    long version;
+}
@@ -0,0 +1,13 @@
+package com.lucumasystems.authenticationapi.event;
+
+import lombok.Value;
+
+/**
+ * Published after a user's session was started, refreshed or ended.
+ */
+@Value
+public class SessionChangedEvent {
+    long userId;
+    /** The jti of the token that is now current, or null if the session was revoked. */
+    String tokenId;
+}
@@ -0,0 +1,7 @@
+package com.lucumasystems.authenticationapi.event;
+
+/**
+ * Published after a signing key was rotated in or retired; every node reloads its key ring from the database.
+ */
+public class SigningKeysChangedEvent {
+}
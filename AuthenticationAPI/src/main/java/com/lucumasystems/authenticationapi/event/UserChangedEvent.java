@@ -0,0 +1,15 @@
+package com.lucumasystems.authenticationapi.event;
+
+import lombok.Value;
+
+/**
+ * Published after a user's account, credentials or role assignments changed.
+ */
+@Value
+public class UserChangedEvent {
+    Long userId;
+    /** The username before the change. */
+    String username;
+    /** The user's updatedAt after the change, as epoch milliseconds. */
+    long version;
+}
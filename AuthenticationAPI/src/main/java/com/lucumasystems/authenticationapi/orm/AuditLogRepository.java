@@ -2,20 +2,21 @@ package com.lucumasystems.authenticationapi.orm;
 
 import com.lucumasystems.authenticationapi.entity.AuditLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Repository
-public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
+public interface AuditLogRepository extends JpaRepository<AuditLog, Long>, JpaSpecificationExecutor<AuditLog> {
 
-    // Find logs by username
-    List<AuditLog> findByUsername(String username);
-
-    // Find logs by action
-    List<AuditLog> findByAction(String action);
-
-    // Find logs by timestamp range
-    List<AuditLog> findByTimestampBetween(LocalDateTime start, LocalDateTime end);
+    // Delete logs before a date in one statement; only partitions that can hold such logs are scanned
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AuditLog a WHERE a.timestamp < :before")
+    int deleteByTimestampBefore(@Param("before") LocalDateTime before);
 }
@@ -0,0 +1,54 @@
+package com.lucumasystems.authenticationapi.orm;
+
+import com.lucumasystems.authenticationapi.entity.AuditAction;
+import com.lucumasystems.authenticationapi.entity.AuditLog;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Composable audit log filters. Each one is a no-op when its argument is null, so a query is built by combining
+ * all of them with whatever the caller passed; every combination is served by one of the indexes on
+ * {@link AuditLog}.
+ */
+public final class AuditLogSpecifications {
+
+    private AuditLogSpecifications() {
+    }
+
+    public static Specification<AuditLog> hasUserId(Long userId) {
+        return (root, query, cb) -> userId == null ? null : cb.equal(root.get("userId"), userId);
+    }
+
+    /**
+     * Entries whose actor gave a name that matched no user, such as failed logins with an unknown username. Not
+     * indexed; only used when the name matches no user, which already rules out the common filters.
+     */
+    public static Specification<AuditLog> hasUnmatchedUsername(String username) {
+        return (root, query, cb) -> username == null ? null : cb.and(
+                cb.isNull(root.get("userId")),
+                cb.equal(cb.function("jsonb_extract_path_text", String.class, root.get("detail"), cb.literal("user")), username));
+    }
+
+    public static Specification<AuditLog> hasAction(AuditAction action) {
+        return (root, query, cb) -> action == null ? null : cb.equal(root.get("action"), action);
+    }
+
+    public static Specification<AuditLog> loggedFrom(LocalDateTime from) {
+        return (root, query, cb) -> from == null ? null : cb.greaterThanOrEqualTo(root.get("timestamp"), from);
+    }
+
+    public static Specification<AuditLog> loggedBefore(LocalDateTime to) {
+        return (root, query, cb) -> to == null ? null : cb.lessThan(root.get("timestamp"), to);
+    }
+
+    /**
+     * Entries after the given one in (timestamp DESC, id DESC) order, i.e. the next page of a keyset scan.
+     * The redundant upper bound on timestamp lets Postgres prune the partitions of later months.
+     */
+    public static Specification<AuditLog> after(LocalDateTime timestamp, Long id) {
+        return (root, query, cb) -> timestamp == null ? null : cb.and(
+                cb.lessThanOrEqualTo(root.get("timestamp"), timestamp),
+                cb.or(cb.lessThan(root.get("timestamp"), timestamp), cb.lessThan(root.get("id"), id)));
+    }
+}
@@ -2,17 +2,61 @@ package com.lucumasystems.authenticationapi.orm;
 
 import com.lucumasystems.authenticationapi.entity.RefreshToken;
 import com.lucumasystems.authenticationapi.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
     @Query("SELECT r FROM RefreshToken r INNER JOIN r.user u WHERE u = :user_detail")
     Optional<RefreshToken> findTokenByUser(@Param("user_detail") User user);
-    @Query("SELECT r FROM RefreshToken r WHERE r.token = :token ")
-    Optional<RefreshToken> findByToken(@Param("token") String refreshToken);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM RefreshToken r WHERE r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHashForUpdate(@Param("tokenHash") byte[] tokenHash);
+    @Query("SELECT r FROM RefreshToken r WHERE r.previousTokenHash = :tokenHash")
+    Optional<RefreshToken> findByPreviousTokenHash(@Param("tokenHash") byte[] tokenHash);
+    @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM RefreshToken r WHERE r.user.id = :userId AND r.jti = :jti")
+    boolean existsByUserIdAndJti(@Param("userId") long userId, @Param("jti") String jti);
+    /**
+     * Sessions started before tokens carried a jti stored the access token itself, and the digest migration
+     * turned it into token_hash; such a row keeps a null jti until the user signs in again.
+     */
+    @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM RefreshToken r " +
+            "WHERE r.user.id = :userId AND r.tokenHash = :tokenHash AND r.jti IS NULL")
+    boolean existsLegacySession(@Param("userId") long userId, @Param("tokenHash") byte[] tokenHash);
+    @Query("SELECT r.user.id, r.jti FROM RefreshToken r WHERE r.jti IS NOT NULL")
+    List<Object[]> findCurrentSessions();
+    @Query("SELECT r.user.id, r.jti FROM RefreshToken r WHERE r.user.id IN :userIds AND r.jti IS NOT NULL")
+    List<Object[]> findCurrentSessions(@Param("userIds") Collection<Long> userIds);
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.user.id = :userId")
+    int deleteByUserId(@Param("userId") long userId);
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO refresh_token (user_id, token_hash, jti, expiry_date) VALUES (:userId, :tokenHash, :jti, :expiryDate) " +
+            "ON CONFLICT (user_id) DO UPDATE SET token_hash = EXCLUDED.token_hash, jti = EXCLUDED.jti, expiry_date = EXCLUDED.expiry_date, " +
+            "previous_token_hash = NULL",
+            nativeQuery = true)
+    int upsertForUser(@Param("userId") long userId, @Param("tokenHash") byte[] tokenHash, @Param("jti") String jti,
+                      @Param("expiryDate") LocalDateTime expiryDate);
+    /**
+     * Delete up to {@code limit} expired sessions. Rows locked by a concurrent refresh or purge are skipped
+     * rather than waited for, so each call holds its locks only for one small chunk.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM refresh_token WHERE id IN (SELECT id FROM refresh_token WHERE expiry_date < :now " +
+            "ORDER BY expiry_date LIMIT :limit FOR UPDATE SKIP LOCKED)",
+            nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
 }
@@ -36,4 +36,14 @@ public interface RoleRepository extends JpaRepository<Role, Integer> {
     @Query("SELECT r FROM Role r LEFT JOIN r.permissions p WHERE (:search IS NULL OR (r.name LIKE CONCAT('%',:search,'%') OR p.name LIKE CONCAT('%',:search,'%')))")
     Page<Role> findRolesWithSearch(@Param("search") String search, Pageable pageable);
     List<Role> findAllByNameIn(List<String> roles);
+
+    @Query("SELECT DISTINCT r FROM Role r LEFT JOIN FETCH r.permissions")
+    List<Role> findAllWithPermissions();
+
+    @Query("SELECT r FROM Role r LEFT JOIN FETCH r.permissions WHERE r.name = :name")
+    Optional<Role> findByNameWithPermissions(@Param("name") String name);
+
+    @Query("SELECT DISTINCT r FROM Role r LEFT JOIN FETCH r.permissions WHERE r.id IN (SELECT rp.id FROM Role rp JOIN rp.permissions p WHERE p.id = :permissionId)")
+    List<Role> findAllWithPermissionId(@Param("permissionId") int permissionId);
+
 }
@@ -3,20 +3,41 @@ package com.lucumasystems.authenticationapi.orm;
 import com.lucumasystems.authenticationapi.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.username = :username AND u.enabled = true")
     Optional<User> findActiveUserByUsername(@Param("username") String username);
+    // Roles and their permissions in the same query, for building a token without further lazy loads
+    @EntityGraph(attributePaths = {"roles", "roles.permissions"})
+    @Query("SELECT u FROM User u WHERE u.username = :username AND u.enabled = true")
+    Optional<User> findActiveUserWithPermissionsByUsername(@Param("username") String username);
+    @EntityGraph(attributePaths = {"roles", "roles.permissions"})
+    @Query("SELECT u FROM User u WHERE u.id = :id AND u.enabled = true")
+    Optional<User> findActiveUserWithPermissionsById(@Param("id") long id);
+    @EntityGraph(attributePaths = {"roles"})
+    @Query("SELECT u FROM User u WHERE u.username IN :usernames AND u.enabled = true")
+    List<User> findActiveUsersByUsernameIn(@Param("usernames") Collection<String> usernames);
     @Query("SELECT u FROM User u WHERE u.id = :id AND u.enabled = true")
     Optional<User> findActiveUserById(@Param("id") int id);
+    // Disabled users included: their audit entries still refer to them
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
     @Query("SELECT u FROM User u WHERE u.enabled = true ")
     Page<User> findAllPaged(Pageable pageable);
+    // Bulk update so a rehash does not touch updatedAt, which would invalidate the user's tokens
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
 
 }
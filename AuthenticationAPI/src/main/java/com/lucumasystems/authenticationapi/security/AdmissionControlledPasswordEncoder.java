@@ -0,0 +1,113 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.error.HashingCapacityExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs password hashing on a fixed pool sized to the CPU instead of on request threads.
+ * <p>
+ * At most {@code threads} hashes run at once and at most {@code queueCapacity} wait; further requests are
+ * rejected immediately with {@link HashingCapacityExceededException} so a login burst cannot occupy every
+ * request thread with CPU-bound work. Time spent queued and time spent hashing are recorded separately.
+ */
+@Slf4j
+public class AdmissionControlledPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+    private final Timer queueWait;
+    private final Timer encodeTime;
+    private final Timer matchesTime;
+    private final Counter rejected;
+
+    public AdmissionControlledPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity,
+                                              Duration maxWait, Duration retryAfter, MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.delegate = delegate;
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.queueWait = Timer.builder("password.hash.queue.wait").register(meterRegistry);
+        this.encodeTime = Timer.builder("password.hash.duration").tag("operation", "encode").register(meterRegistry);
+        this.matchesTime = Timer.builder("password.hash.duration").tag("operation", "matches").register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+        Gauge.builder("password.hash.queue.depth", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        log.info("Password hashing executor started with {} threads and a queue of {}", poolSize, queueCapacity);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTime, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTime, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private <T> T submit(Timer hashTime, Callable<T> hash) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return hashTime.recordCallable(hash);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new HashingCapacityExceededException("Too many concurrent password checks, try again later", retryAfter);
+        }
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new HashingCapacityExceededException("Password check timed out in the hashing queue", retryAfter);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
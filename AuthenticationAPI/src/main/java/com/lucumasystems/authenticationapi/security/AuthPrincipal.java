@@ -0,0 +1,75 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.entity.Role;
+import com.lucumasystems.authenticationapi.entity.User;
+import lombok.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the parts of a {@link User} needed to authenticate a request.
+ * <p>
+ * Stored in the security context instead of the Hibernate entity, so it is safe to share between requests
+ * and threads, and its authorities are built once rather than on every call.
+ */
+@Value
+public class AuthPrincipal implements UserDetails {
+    Long id;
+    String username;
+    boolean accountNonExpired;
+    boolean accountNonLocked;
+    boolean credentialsNonExpired;
+    boolean enabled;
+    Set<String> roles;
+    List<GrantedAuthority> authorities;
+    /** The user's updatedAt as epoch milliseconds, see {@link AuthzVersions}. */
+    long version;
+
+    public static AuthPrincipal from(User user) {
+        Set<String> roles = user.getRoles().stream()
+                .map(Role::getName)
+                .collect(Collectors.toUnmodifiableSet());
+        return new AuthPrincipal(
+                user.getId(),
+                user.getUsername(),
+                user.isAccountNonExpired(),
+                user.isAccountNonLocked(),
+                user.isCredentialsNonExpired(),
+                user.isEnabled(),
+                roles,
+                authorities(roles),
+                AuthzVersions.versionOf(user.getUpdatedAt()));
+    }
+
+    /**
+     * Build a principal from the claims of a token whose versions are current. The account was active when the
+     * token was issued and has not changed since, so its status flags are all set.
+     */
+    public static AuthPrincipal from(VerifiedToken token) {
+        Set<String> roles = Set.copyOf(token.getRoles());
+        return new AuthPrincipal(
+                token.getUserId(),
+                token.getUsername(),
+                true,
+                true,
+                true,
+                true,
+                roles,
+                authorities(roles),
+                token.getUserVersion());
+    }
+
+    private static List<GrantedAuthority> authorities(Set<String> roles) {
+        return roles.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toUnmodifiableList());
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+}
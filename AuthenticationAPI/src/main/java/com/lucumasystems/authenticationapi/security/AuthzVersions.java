@@ -0,0 +1,121 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.event.InvalidationResyncEvent;
+import com.lucumasystems.authenticationapi.event.PermissionChangedEvent;
+import com.lucumasystems.authenticationapi.event.RoleChangedEvent;
+import com.lucumasystems.authenticationapi.event.UserChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how current the authorization data baked into a token is.
+ * <p>
+ * A token carries the user version (the user's updatedAt when it was issued) and the RBAC version (the latest
+ * role or permission change this node knew of). The token's claims can be trusted without loading the user when
+ * neither is older than what this node currently knows. User versions are learned lazily, from change events and
+ * from users loaded from the database, so a user never seen since startup always takes the database path once.
+ * <p>
+ * RBAC versions come from the single row of the rbac_version table, which every role or permission change advances
+ * inside its own transaction. The row lock orders the changes by commit, so every node applies the same versions in
+ * the same order whatever its clock says; a version is taken once and carried by the change event.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AuthzVersions {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLong rbacVersion = new AtomicLong();
+    private final Map<Long, Long> userVersions = new ConcurrentHashMap<>();
+
+    public static long versionOf(LocalDateTime updatedAt) {
+        return updatedAt == null ? 0 : updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Long latest = jdbcTemplate.queryForObject("SELECT version FROM rbac_version", Long.class);
+        rbacVersion.accumulateAndGet(latest == null ? 0 : latest, Math::max);
+        log.info("RBAC version initialised to {}", rbacVersion.get());
+    }
+
+    /**
+     * Forget every user version and reload the RBAC version, because changes made on other nodes may have been
+     * missed; users take the database path once more.
+     */
+    @EventListener(InvalidationResyncEvent.class)
+    public void resync() {
+        userVersions.clear();
+        load();
+    }
+
+    public long rbacVersion() {
+        return rbacVersion.get();
+    }
+
+    /**
+     * Advance the RBAC version for a role or permission change, inside the caller's transaction. The row stays
+     * locked until that transaction ends, so a concurrent change takes the next version only after this one is
+     * committed or rolled back. Versions stay on the epoch millisecond scale of tokens issued before the counter
+     * existed and never go backwards.
+     *
+     * @return The version to publish with the change event.
+     */
+    public long nextRbacVersion() {
+        Long version = jdbcTemplate.queryForObject(
+                "UPDATE rbac_version SET version = greatest(version + 1, (extract(epoch FROM clock_timestamp()) * 1000)::bigint) " +
+                        "RETURNING version", Long.class);
+        if (version == null) {
+            throw new IllegalStateException("rbac_version has no row");
+        }
+        return version;
+    }
+
+    /**
+     * @return Whether the roles and permissions in the token still match what this node knows about the user.
+     */
+    public boolean isCurrent(VerifiedToken token) {
+        if (token.getUserVersion() == null || token.getRbacVersion() == null) {
+            return false;
+        }
+        Long knownUserVersion = userVersions.get(token.getUserId());
+        return knownUserVersion != null
+                && token.getUserVersion() >= knownUserVersion
+                && token.getRbacVersion() >= rbacVersion.get();
+    }
+
+    /**
+     * Record the version of a user that was loaded from the database.
+     */
+    public void observeUser(long userId, long version) {
+        userVersions.merge(userId, version, Math::max);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUserId() != null) {
+            observeUser(event.getUserId(), event.getVersion());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        rbacVersion.accumulateAndGet(event.getVersion(), Math::max);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        rbacVersion.accumulateAndGet(event.getVersion(), Math::max);
+    }
+}
@@ -0,0 +1,78 @@
+package com.lucumasystems.authenticationapi.security;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * BCrypt encoder whose cost factor is chosen for the hardware it runs on.
+ * <p>
+ * Every step of the cost doubles the work, so timing a hash at a known cost is enough to find the highest cost
+ * that stays within the target latency; the median of several timings keeps one slow probe from deciding it.
+ * Stored hashes with a lower cost are reported as needing an upgrade, so they are rehashed at the calibrated cost
+ * on the next successful login. Higher costs are left alone: nodes behind a load balancer may calibrate to
+ * neighbouring costs, and rehashing in both directions would rewrite the same users on every login.
+ */
+@Slf4j
+@Getter
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final int MIN_STRENGTH = 8;
+    private static final int MAX_STRENGTH = 16;
+    private static final int PROBE_STRENGTH = 10;
+    private static final int PROBES = 5;
+
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    /**
+     * @param targetLatency How long one hash should take.
+     * @return An encoder at the highest cost whose hash time does not exceed the target.
+     */
+    public static CalibratedBCryptPasswordEncoder calibrate(Duration targetLatency) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(PROBE_STRENGTH);
+        // The first hash also pays for class loading and JIT warm-up
+        probe.encode("calibration");
+        long[] timings = new long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            long started = System.nanoTime();
+            probe.encode("calibration");
+            timings[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(timings);
+        long elapsed = Math.max(1, timings[PROBES / 2]);
+        int steps = (int) Math.floor(Math.log((double) targetLatency.toNanos() / elapsed) / Math.log(2));
+        int strength = Math.min(MAX_STRENGTH, Math.max(MIN_STRENGTH, PROBE_STRENGTH + steps));
+        log.info("BCrypt cost {} took a median {} ms, calibrated cost {} for a target of {} ms",
+                PROBE_STRENGTH, elapsed / 1_000_000, strength, targetLatency.toMillis());
+        return new CalibratedBCryptPasswordEncoder(strength);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        Integer storedStrength = strengthOf(encodedPassword);
+        return storedStrength != null && storedStrength < strength;
+    }
+
+    /**
+     * @return The cost recorded in a {@code $2a$NN$...} hash, or null if it is not a BCrypt hash.
+     */
+    private static Integer strengthOf(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$'
+                || encodedPassword.charAt(3) != '$' || encodedPassword.charAt(6) != '$') {
+            return null;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.lucumasystems.authenticationapi.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+
+/**
+ * Answers {@code hasPermission(...)} expressions from the {@link PermissionIndex}. The target is ignored; permissions
+ * in this service are global rather than per object.
+ */
+@Component
+@RequiredArgsConstructor
+public class CompiledPermissionEvaluator implements PermissionEvaluator {
+
+    private final PermissionIndex permissionIndex;
+
+    public boolean hasPermission(Authentication authentication, String permission) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthPrincipal principal)) {
+            return false;
+        }
+        return permissionIndex.hasPermission(principal.getRoles(), permission);
+    }
+
+    @Override
+    public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
+        return hasPermission(authentication, String.valueOf(permission));
+    }
+
+    @Override
+    public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType, Object permission) {
+        return hasPermission(authentication, String.valueOf(permission));
+    }
+}
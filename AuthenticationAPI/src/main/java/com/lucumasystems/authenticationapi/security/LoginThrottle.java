@@ -0,0 +1,226 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.error.LoginThrottledException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory failed-login counters per username and per client address.
+ * <p>
+ * Each key has a sliding window split into buckets; a bucket packs the time slot it counts for and its count
+ * into one long that is updated by CAS, so recording a failure takes no lock and a stale bucket is reset by
+ * the same CAS that counts into it. Login attempts over the limit are rejected before the authentication
+ * manager runs, so a credential-stuffing run costs a map lookup instead of a BCrypt hash. A separate, longer
+ * window per username decides when the account itself is locked.
+ */
+@Component
+@Slf4j
+public class LoginThrottle {
+
+    private static final int BUCKETS = 10;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final Map<String, SlidingWindow> usernameFailures = new ConcurrentHashMap<>();
+    private final Map<String, SlidingWindow> addressFailures = new ConcurrentHashMap<>();
+    private final Map<String, SlidingWindow> lockoutFailures = new ConcurrentHashMap<>();
+    private final long bucketMillis;
+    private final long lockoutBucketMillis;
+    private final int maxFailuresPerUsername;
+    private final int maxFailuresPerAddress;
+    private final int lockAfterFailures;
+    private final int maxTrackedKeys;
+    private final Counter rejected;
+
+    public LoginThrottle(@Value("${login-throttle.window:PT15M}") Duration window,
+                         @Value("${login-throttle.max-failures-per-username:5}") int maxFailuresPerUsername,
+                         @Value("${login-throttle.max-failures-per-address:50}") int maxFailuresPerAddress,
+                         @Value("${login-throttle.lockout-window:PT24H}") Duration lockoutWindow,
+                         @Value("${login-throttle.lock-after-failures:20}") int lockAfterFailures,
+                         @Value("${login-throttle.max-tracked-keys:100000}") int maxTrackedKeys,
+                         MeterRegistry meterRegistry) {
+        this.bucketMillis = Math.max(1, window.toMillis() / BUCKETS);
+        this.lockoutBucketMillis = Math.max(1, lockoutWindow.toMillis() / BUCKETS);
+        this.maxFailuresPerUsername = maxFailuresPerUsername;
+        this.maxFailuresPerAddress = maxFailuresPerAddress;
+        this.lockAfterFailures = lockAfterFailures;
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.rejected = Counter.builder("auth.login.throttled").register(meterRegistry);
+        Gauge.builder("auth.login.throttle.keys", this, throttle -> throttle.usernameFailures.size() + throttle.addressFailures.size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws LoginThrottledException if the username or the address has too many recent failures.
+     */
+    public void checkAllowed(String username, String address) {
+        long now = System.currentTimeMillis();
+        Duration retryAfter = username == null ? null
+                : retryAfter(usernameFailures.get(key(username)), maxFailuresPerUsername, now, bucketMillis);
+        if (retryAfter == null && address != null) {
+            retryAfter = retryAfter(addressFailures.get(address), maxFailuresPerAddress, now, bucketMillis);
+        }
+        if (retryAfter != null) {
+            rejected.increment();
+            log.warn("Login for {} from {} throttled for {}", username, address, retryAfter);
+            throw new LoginThrottledException("Too many failed login attempts, try again later", retryAfter);
+        }
+    }
+
+    /**
+     * Count a failed login.
+     *
+     * @return Whether the username has now failed often enough that the account should be locked.
+     */
+    public boolean recordFailure(String username, String address) {
+        long now = System.currentTimeMillis();
+        if (address != null) {
+            window(addressFailures, address).increment(now / bucketMillis);
+        }
+        if (username == null) {
+            return false;
+        }
+        window(usernameFailures, key(username)).increment(now / bucketMillis);
+        SlidingWindow lockout = window(lockoutFailures, key(username));
+        lockout.increment(now / lockoutBucketMillis);
+        return lockout.sum(now / lockoutBucketMillis) >= lockAfterFailures;
+    }
+
+    public void recordSuccess(String username) {
+        reset(username);
+    }
+
+    public void reset(String username) {
+        if (username == null) {
+            return;
+        }
+        usernameFailures.remove(key(username));
+        lockoutFailures.remove(key(username));
+    }
+
+    public ThrottleState state(String username, String address) {
+        long now = System.currentTimeMillis();
+        SlidingWindow byUsername = username == null ? null : usernameFailures.get(key(username));
+        SlidingWindow byAddress = address == null ? null : addressFailures.get(address);
+        SlidingWindow lockout = username == null ? null : lockoutFailures.get(key(username));
+        Duration usernameRetry = retryAfter(byUsername, maxFailuresPerUsername, now, bucketMillis);
+        Duration addressRetry = retryAfter(byAddress, maxFailuresPerAddress, now, bucketMillis);
+        return ThrottleState.builder()
+                .username(username)
+                .address(address)
+                .usernameFailures(byUsername == null ? 0 : byUsername.sum(now / bucketMillis))
+                .addressFailures(byAddress == null ? 0 : byAddress.sum(now / bucketMillis))
+                .lockoutFailures(lockout == null ? 0 : lockout.sum(now / lockoutBucketMillis))
+                .maxFailuresPerUsername(maxFailuresPerUsername)
+                .maxFailuresPerAddress(maxFailuresPerAddress)
+                .lockAfterFailures(lockAfterFailures)
+                .blocked(usernameRetry != null || addressRetry != null)
+                .retryAfterSeconds(usernameRetry != null ? usernameRetry.toSeconds() : addressRetry != null ? addressRetry.toSeconds() : 0)
+                .trackedUsernames(usernameFailures.size())
+                .trackedAddresses(addressFailures.size())
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${login-throttle.cleanup-interval:PT1M}")
+    public void removeIdleWindows() {
+        long now = System.currentTimeMillis();
+        usernameFailures.values().removeIf(window -> window.sum(now / bucketMillis) == 0);
+        addressFailures.values().removeIf(window -> window.sum(now / bucketMillis) == 0);
+        lockoutFailures.values().removeIf(window -> window.sum(now / lockoutBucketMillis) == 0);
+    }
+
+    private SlidingWindow window(Map<String, SlidingWindow> windows, String key) {
+        SlidingWindow window = windows.get(key);
+        if (window != null) {
+            return window;
+        }
+        if (windows.size() >= maxTrackedKeys) {
+            // Under a spray of distinct keys count into a throwaway window rather than grow without bound;
+            // the per-address limit still applies
+            return new SlidingWindow();
+        }
+        return windows.computeIfAbsent(key, ignored -> new SlidingWindow());
+    }
+
+    private static Duration retryAfter(SlidingWindow window, int limit, long now, long bucketMillis) {
+        if (window == null) {
+            return null;
+        }
+        long slot = now / bucketMillis;
+        if (window.sum(slot) < limit) {
+            return null;
+        }
+        // Blocked until the oldest counted bucket leaves the window
+        long releasedAt = (window.oldestSlot(slot) + BUCKETS) * bucketMillis;
+        return Duration.ofMillis(Math.max(1000, releasedAt - now));
+    }
+
+    private static String key(String username) {
+        return username == null ? null : username.toLowerCase();
+    }
+
+    private static final class SlidingWindow {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void increment(long slot) {
+            int index = (int) (slot % BUCKETS);
+            while (true) {
+                long current = buckets.get(index);
+                long count = current >>> COUNT_BITS == slot ? current & COUNT_MASK : 0;
+                long next = (slot << COUNT_BITS) | Math.min(count + 1, COUNT_MASK);
+                if (buckets.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
+
+        int sum(long slot) {
+            int sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = buckets.get(i);
+                if (slot - (value >>> COUNT_BITS) < BUCKETS) {
+                    sum += (int) (value & COUNT_MASK);
+                }
+            }
+            return sum;
+        }
+
+        long oldestSlot(long slot) {
+            long oldest = slot;
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = buckets.get(i);
+                long bucketSlot = value >>> COUNT_BITS;
+                if (slot - bucketSlot < BUCKETS && (value & COUNT_MASK) > 0) {
+                    oldest = Math.min(oldest, bucketSlot);
+                }
+            }
+            return oldest;
+        }
+    }
+
+    @Builder
+    public record ThrottleState(String username,
+                                String address,
+                                int usernameFailures,
+                                int addressFailures,
+                                int lockoutFailures,
+                                int maxFailuresPerUsername,
+                                int maxFailuresPerAddress,
+                                int lockAfterFailures,
+                                boolean blocked,
+                                long retryAfterSeconds,
+                                int trackedUsernames,
+                                int trackedAddresses) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.lucumasystems.authenticationapi.security;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.core.Authentication;
+
+import java.util.function.Supplier;
+
+/**
+ * Evaluates method security expressions against {@link PermissionExpressionRoot}, so
+ * {@code @PreAuthorize("hasPermission('GRADES_WRITE')")} is answered by the compiled permission index.
+ */
+public class PermissionExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+
+    private final CompiledPermissionEvaluator permissionEvaluator;
+
+    public PermissionExpressionHandler(CompiledPermissionEvaluator permissionEvaluator) {
+        this.permissionEvaluator = permissionEvaluator;
+        setPermissionEvaluator(permissionEvaluator);
+    }
+
+    @Override
+    public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        StandardEvaluationContext context = (StandardEvaluationContext) super.createEvaluationContext(authentication, invocation);
+        PermissionExpressionRoot root = new PermissionExpressionRoot(authentication, permissionEvaluator);
+        root.setThis(invocation.getThis());
+        root.setRoleHierarchy(getRoleHierarchy());
+        context.setRootObject(root);
+        return context;
+    }
+}
@@ -0,0 +1,57 @@
+package com.lucumasystems.authenticationapi.security;
+
+import org.springframework.security.access.expression.SecurityExpressionRoot;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+import java.util.function.Supplier;
+
+/**
+ * Method security expression root adding the single argument {@code hasPermission('NAME')} form.
+ */
+public class PermissionExpressionRoot extends SecurityExpressionRoot implements MethodSecurityExpressionOperations {
+
+    private final CompiledPermissionEvaluator permissionEvaluator;
+    private Object filterObject;
+    private Object returnObject;
+    private Object target;
+
+    public PermissionExpressionRoot(Supplier<Authentication> authentication, CompiledPermissionEvaluator permissionEvaluator) {
+        super(authentication);
+        this.permissionEvaluator = permissionEvaluator;
+        setPermissionEvaluator(permissionEvaluator);
+    }
+
+    public boolean hasPermission(String permission) {
+        return permissionEvaluator.hasPermission(getAuthentication(), permission);
+    }
+
+    @Override
+    public void setFilterObject(Object filterObject) {
+        this.filterObject = filterObject;
+    }
+
+    @Override
+    public Object getFilterObject() {
+        return filterObject;
+    }
+
+    @Override
+    public void setReturnObject(Object returnObject) {
+        this.returnObject = returnObject;
+    }
+
+    @Override
+    public Object getReturnObject() {
+        return returnObject;
+    }
+
+    void setThis(Object target) {
+        this.target = target;
+    }
+
+    @Override
+    public Object getThis() {
+        return target;
+    }
+}
@@ -0,0 +1,281 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.entity.Permission;
+import com.lucumasystems.authenticationapi.entity.Role;
+import com.lucumasystems.authenticationapi.event.InvalidationResyncEvent;
+import com.lucumasystems.authenticationapi.event.PermissionChangedEvent;
+import com.lucumasystems.authenticationapi.event.RoleChangedEvent;
+import com.lucumasystems.authenticationapi.orm.PermissionRepository;
+import com.lucumasystems.authenticationapi.orm.RoleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compiled view of which role grants which permission.
+ * <p>
+ * Every permission is a bit whose position is its database id, every active role is compiled to a bitset of its
+ * active permissions, and the effective permissions of a set of roles are the OR of their bitsets, memoized per
+ * role set. A check is then a map lookup and a bit test. The index is an immutable snapshot replaced on change;
+ * role and permission events recompile only what they touch. Whenever the permission names change, the verified token
+ * cache is cleared, since its entries hold names decoded with the previous dictionary.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PermissionIndex {
+
+    private static final long[] NO_PERMISSIONS = new long[0];
+
+    private final RoleRepository roleRepository;
+    private final PermissionRepository permissionRepository;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Snapshot snapshot = new Snapshot(0, Map.of(), Map.of(), Map.of());
+    private volatile int requestedDictionaryVersion;
+
+    @EventListener({ApplicationReadyEvent.class, InvalidationResyncEvent.class})
+    public void rebuild() {
+        writeLock.lock();
+        try {
+            Map<String, Integer> permissionIds = new HashMap<>();
+            Map<Integer, String> permissionNames = new HashMap<>();
+            for (Permission permission : permissionRepository.findAll()) {
+                if (permission.isActive()) {
+                    permissionIds.put(permission.getName(), permission.getId());
+                    permissionNames.put(permission.getId(), permission.getName());
+                }
+            }
+            Map<String, long[]> roleBits = new HashMap<>();
+            for (Role role : roleRepository.findAllWithPermissions()) {
+                roleBits.put(role.getName(), compile(role));
+            }
+            snapshot = new Snapshot(snapshot.version() + 1, Map.copyOf(permissionIds), Map.copyOf(permissionNames), Map.copyOf(roleBits));
+            verifiedTokenCache.invalidateAll();
+            log.info("Permission index built with {} permissions and {} roles", permissionIds.size(), roleBits.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @param roles      Role names of the principal.
+     * @param permission Permission name.
+     * @return Whether any active role grants the active permission.
+     */
+    public boolean hasPermission(Set<String> roles, String permission) {
+        Snapshot current = snapshot;
+        Integer id = current.permissionIds().get(permission);
+        if (id == null) {
+            return false;
+        }
+        return isSet(current.effective(roles), id);
+    }
+
+    /**
+     * @param roles Role names of the principal.
+     * @return The effective permission bitset; callers must not modify it.
+     */
+    public long[] effectivePermissions(Set<String> roles) {
+        return snapshot.effective(roles);
+    }
+
+    /**
+     * @param bits A permission bitset.
+     * @return The names of the active permissions set in it.
+     */
+    public List<String> permissionNames(long[] bits) {
+        Map<Integer, String> names = snapshot.permissionNames();
+        List<String> result = new ArrayList<>();
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                int id = word * Long.SIZE + Long.numberOfTrailingZeros(remaining);
+                String name = names.get(id);
+                if (name != null) {
+                    result.add(name);
+                }
+                remaining &= remaining - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param permissions Permission names.
+     * @return The bitset of the active permissions among them.
+     */
+    public long[] encode(Collection<String> permissions) {
+        Map<String, Integer> ids = snapshot.permissionIds();
+        long[] bits = NO_PERMISSIONS;
+        for (String permission : permissions) {
+            Integer id = ids.get(permission);
+            if (id == null) {
+                continue;
+            }
+            if (id / Long.SIZE >= bits.length) {
+                bits = Arrays.copyOf(bits, id / Long.SIZE + 1);
+            }
+            bits[id / Long.SIZE] |= 1L << id;
+        }
+        return bits;
+    }
+
+    public long version() {
+        return snapshot.version();
+    }
+
+    /**
+     * Permission ids only grow, so the highest id this node knows identifies its dictionary.
+     *
+     * @return The dictionary version stamped into tokens next to their permission bitmap.
+     */
+    public int dictionaryVersion() {
+        return snapshot.dictionaryVersion();
+    }
+
+    /**
+     * Make sure a bitmap written against the given dictionary version can be decoded, rebuilding once
+     * if another node has created permissions this one has not heard of yet.
+     *
+     * @param dictionaryVersion The version a token was encoded against.
+     */
+    public void ensureDictionary(int dictionaryVersion) {
+        if (dictionaryVersion <= snapshot.dictionaryVersion() || dictionaryVersion <= requestedDictionaryVersion) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (dictionaryVersion > snapshot.dictionaryVersion() && dictionaryVersion > requestedDictionaryVersion) {
+                // Remembered so a permission deleted since the token was issued does not cause a rebuild per token
+                requestedDictionaryVersion = dictionaryVersion;
+                log.info("Token references permission dictionary {}, local is {}; rebuilding", dictionaryVersion, snapshot.dictionaryVersion());
+                rebuild();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            Map<String, long[]> roleBits = new HashMap<>(current.roleBits());
+            Optional<Role> role = roleRepository.findByNameWithPermissions(event.getRoleName());
+            if (role.isPresent()) {
+                roleBits.put(role.get().getName(), compile(role.get()));
+            } else {
+                roleBits.remove(event.getRoleName());
+            }
+            snapshot = new Snapshot(current.version() + 1, current.permissionIds(), current.permissionNames(), Map.copyOf(roleBits));
+            log.debug("Recompiled role {} in permission index", event.getRoleName());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        writeLock.lock();
+        try {
+            Snapshot current = snapshot;
+            Map<String, Integer> permissionIds = new HashMap<>(current.permissionIds());
+            Map<Integer, String> permissionNames = new HashMap<>(current.permissionNames());
+            String previousName = permissionNames.remove(event.getPermissionId());
+            if (previousName != null) {
+                permissionIds.remove(previousName);
+            }
+            permissionRepository.findById(event.getPermissionId())
+                    .filter(Permission::isActive)
+                    .ifPresent(permission -> {
+                        permissionIds.put(permission.getName(), permission.getId());
+                        permissionNames.put(permission.getId(), permission.getName());
+                    });
+            Map<String, long[]> roleBits = new HashMap<>(current.roleBits());
+            for (Role role : roleRepository.findAllWithPermissionId(event.getPermissionId())) {
+                roleBits.put(role.getName(), compile(role));
+            }
+            snapshot = new Snapshot(current.version() + 1, Map.copyOf(permissionIds), Map.copyOf(permissionNames), Map.copyOf(roleBits));
+            verifiedTokenCache.invalidateAll();
+            log.debug("Recompiled permission {} in permission index", event.getPermissionId());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static long[] compile(Role role) {
+        if (!role.isActive() || role.getPermissions() == null) {
+            return NO_PERMISSIONS;
+        }
+        int maxId = -1;
+        for (Permission permission : role.getPermissions()) {
+            if (permission.isActive()) {
+                maxId = Math.max(maxId, permission.getId());
+            }
+        }
+        if (maxId < 0) {
+            return NO_PERMISSIONS;
+        }
+        long[] bits = new long[maxId / Long.SIZE + 1];
+        for (Permission permission : role.getPermissions()) {
+            if (permission.isActive()) {
+                bits[permission.getId() / Long.SIZE] |= 1L << permission.getId();
+            }
+        }
+        return bits;
+    }
+
+    private static boolean isSet(long[] bits, int id) {
+        int word = id / Long.SIZE;
+        return word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+
+    private record Snapshot(long version,
+                            Map<String, Integer> permissionIds,
+                            Map<Integer, String> permissionNames,
+                            Map<String, long[]> roleBits,
+                            int dictionaryVersion,
+                            Map<Set<String>, long[]> effectiveByRoles) {
+
+        Snapshot(long version, Map<String, Integer> permissionIds, Map<Integer, String> permissionNames, Map<String, long[]> roleBits) {
+            this(version, permissionIds, permissionNames, roleBits,
+                    permissionNames.keySet().stream().mapToInt(Integer::intValue).max().orElse(0),
+                    new ConcurrentHashMap<>());
+        }
+
+        long[] effective(Collection<String> roles) {
+            Set<String> key = Set.copyOf(roles);
+            return effectiveByRoles.computeIfAbsent(key, this::or);
+        }
+
+        private long[] or(Set<String> roles) {
+            long[] result = NO_PERMISSIONS;
+            for (String role : roles) {
+                long[] bits = roleBits.getOrDefault(role, NO_PERMISSIONS);
+                if (bits.length > result.length) {
+                    result = Arrays.copyOf(result, bits.length);
+                }
+                for (int i = 0; i < bits.length; i++) {
+                    result[i] |= bits[i];
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.event.InvalidationResyncEvent;
+import com.lucumasystems.authenticationapi.event.RoleChangedEvent;
+import com.lucumasystems.authenticationapi.event.UserChangedEvent;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of {@link AuthPrincipal} snapshots of active users, keyed by username.
+ * <p>
+ * Entries expire after a TTL and are dropped as soon as a {@link UserChangedEvent} or {@link RoleChangedEvent}
+ * is committed. A load that raced with an invalidation is returned to its caller but not cached.
+ */
+@Component
+@Slf4j
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public PrincipalCache(UserRepository userRepository,
+                          @Value("${auth.principal-cache.ttl:PT5M}") Duration ttl,
+                          @Value("${auth.principal-cache.max-size:10000}") int maxSize,
+                          MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+        this.hits = Counter.builder("auth.principal.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("auth.principal.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("auth.principal.cache.evictions").register(meterRegistry);
+        Gauge.builder("auth.principal.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * @param username The username taken from a verified token.
+     * @return The active user with that name, or empty if there is none.
+     */
+    public Optional<AuthPrincipal> get(String username) {
+        Entry entry = entries.get(username);
+        if (entry != null && !entry.isExpired()) {
+            hits.increment();
+            return Optional.of(entry.principal());
+        }
+        misses.increment();
+        long observed = invalidations.get();
+        Optional<AuthPrincipal> principal = userRepository.findActiveUserByUsername(username).map(AuthPrincipal::from);
+        principal.ifPresent(loaded -> store(loaded, observed));
+        return principal;
+    }
+
+    /**
+     * Resolve many users at once, loading every miss with a single query.
+     *
+     * @param usernames Usernames taken from verified tokens.
+     * @return The active users among them, keyed by username.
+     */
+    public Map<String, AuthPrincipal> getAll(Collection<String> usernames) {
+        Map<String, AuthPrincipal> found = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String username : usernames) {
+            Entry entry = entries.get(username);
+            if (entry != null && !entry.isExpired()) {
+                found.put(username, entry.principal());
+            } else {
+                missing.add(username);
+            }
+        }
+        hits.increment(found.size());
+        if (missing.isEmpty()) {
+            return found;
+        }
+        misses.increment(missing.size());
+        long observed = invalidations.get();
+        for (User user : userRepository.findActiveUsersByUsernameIn(missing)) {
+            AuthPrincipal principal = AuthPrincipal.from(user);
+            found.put(principal.getUsername(), principal);
+            store(principal, observed);
+        }
+        return found;
+    }
+
+    private void store(AuthPrincipal principal, long observedInvalidations) {
+        if (observedInvalidations != invalidations.get()) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            entries.values().removeIf(Entry::isExpired);
+        }
+        if (entries.size() < maxSize) {
+            entries.put(principal.getUsername(), new Entry(principal, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    public void invalidate(String username) {
+        invalidations.incrementAndGet();
+        if (entries.remove(username) != null) {
+            evictions.increment();
+        }
+    }
+
+    public void invalidateUser(Long userId) {
+        invalidations.incrementAndGet();
+        entries.values().removeIf(entry -> {
+            boolean matches = Objects.equals(entry.principal().getId(), userId);
+            if (matches) {
+                evictions.increment();
+            }
+            return matches;
+        });
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        evictions.increment(entries.size());
+        entries.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        log.debug("Invalidating principal of user {}", event.getUsername());
+        if (event.getUsername() != null) {
+            invalidate(event.getUsername());
+        }
+        if (event.getUserId() != null) {
+            invalidateUser(event.getUserId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        log.debug("Invalidating all principals after change to role {}", event.getRoleName());
+        invalidateAll();
+    }
+
+    @EventListener(InvalidationResyncEvent.class)
+    public void onResync() {
+        log.debug("Invalidating all principals after resync");
+        invalidateAll();
+    }
+
+    private record Entry(AuthPrincipal principal, long expiresAtNanos) {
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos > 0;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.lucumasystems.authenticationapi.security;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the keys used to sign and verify JWTs.
+ * <p>
+ * Keys are decoded once and kept in an immutable snapshot that is swapped atomically on rotation,
+ * so the request path never decodes Base64 or rebuilds key material. A single parser is built up front
+ * and resolves the verification key from the token's {@code kid} header against the current snapshot.
+ * <p>
+ * With {@code token.algorithm} set to ES256 or EdDSA tokens are signed with a private key and the public half
+ * is published as a JWK set, so other services can verify tokens without calling back. The HMAC key stays in
+ * the ring to verify tokens issued before the switch. Without a configured key pair one is generated at
+ * startup, which only suits a single instance since every restart invalidates the tokens it issued.
+ * <p>
+ * Keys rotated or retired at runtime are stored in the signing_key table by
+ * {@link com.lucumasystems.authenticationapi.service.SigningKeyService}, which reloads the ring on every node when
+ * they change and at startup, so a rotation survives restarts and applies to the whole cluster.
+ */
+@Component
+@Slf4j
+public class SigningKeyRing {
+
+    private final String legacyKeyId;
+    private final String algorithm;
+    // A lock rather than synchronized, which pins virtual threads on JDK 21
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final JwtParser parser;
+    // The keys from configuration, which stored rotations and retirements are applied on top of
+    private final Snapshot configured;
+    private volatile Snapshot snapshot;
+
+    public SigningKeyRing(@Value("${token}") String tokenSecretKey,
+                          @Value("${token.key-id:primary}") String keyId,
+                          @Value("${token.algorithm:HS256}") String algorithm,
+                          @Value("${token.private-key-path:}") String privateKeyPath,
+                          @Value("${token.public-key-path:}") String publicKeyPath) {
+        this.legacyKeyId = keyId;
+        this.algorithm = algorithm;
+        SigningKey hmacKey = new SigningKey(keyId, hmacKey(tokenSecretKey), null);
+        SigningKey active = "HS256".equalsIgnoreCase(algorithm)
+                ? hmacKey
+                : asymmetricKey(algorithm, privateKeyPath, publicKeyPath);
+        Map<String, SigningKey> keys = new LinkedHashMap<>();
+        keys.put(hmacKey.getKeyId(), hmacKey);
+        keys.put(active.getKeyId(), active);
+        this.configured = new Snapshot(active, Map.copyOf(keys));
+        this.snapshot = configured;
+        this.parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        return verificationKey(header.getKeyId());
+                    }
+                })
+                .build();
+        log.info("Signing tokens with {} key {}", algorithm, active.getKeyId());
+    }
+
+    /**
+     * @return The key new tokens are signed with.
+     */
+    public SigningKey activeKey() {
+        return snapshot.active();
+    }
+
+    /**
+     * @return The shared parser; it is thread-safe and follows key rotations.
+     */
+    public JwtParser parser() {
+        return parser;
+    }
+
+    public Set<String> keyIds() {
+        return snapshot.keys().keySet();
+    }
+
+    /**
+     * @return The public keys tokens may be verified with, as JWKs; HMAC secrets are never published.
+     */
+    public List<Jwk<?>> publicJwks() {
+        List<Jwk<?>> jwks = new ArrayList<>();
+        for (SigningKey signingKey : snapshot.keys().values()) {
+            if (signingKey.getPublicKey() != null) {
+                jwks.add(Jwks.builder().key(signingKey.getPublicKey()).id(signingKey.getKeyId()).publicKeyUse("sig").build());
+            }
+        }
+        return jwks;
+    }
+
+    /**
+     * Check that a key can be added and made the signing key; the key is added by {@link #load} once it is stored.
+     * <p>
+     * Only HMAC keys can be rotated this way. With an asymmetric algorithm an HMAC key would switch signing to
+     * HS256 with a key that is never published in the JWK set, so every JWKS consumer would reject the new
+     * tokens; the key pair is rotated by changing {@code token.private-key-path} and restarting instead.
+     *
+     * @param keyId     The identifier stamped into the {@code kid} header.
+     * @param secretKey The Base64 encoded HMAC secret.
+     * @throws IllegalArgumentException If the key is invalid or tokens are signed with an asymmetric algorithm.
+     */
+    public void checkRotation(String keyId, String secretKey) {
+        if (!"HS256".equalsIgnoreCase(algorithm)) {
+            throw new IllegalArgumentException("Tokens are signed with " + algorithm + "; rotate the key pair through "
+                    + "token.private-key-path and token.public-key-path instead of an HMAC secret");
+        }
+        if (keyId == null || keyId.isBlank()) {
+            throw new IllegalArgumentException("Key id is required");
+        }
+        try {
+            hmacKey(secretKey);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid signing key: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Check that tokens signed with the given key can stop being accepted.
+     *
+     * @param keyId The key to remove; the active key cannot be retired.
+     * @throws IllegalArgumentException If the key is unknown or active.
+     */
+    public void checkRetirement(String keyId) {
+        Snapshot current = snapshot;
+        if (current.active().getKeyId().equals(keyId)) {
+            throw new IllegalArgumentException("Cannot retire the active signing key");
+        }
+        if (!current.keys().containsKey(keyId)) {
+            throw new IllegalArgumentException("Unknown signing key " + keyId);
+        }
+    }
+
+    /**
+     * Rebuild the ring from the configured keys and the rotations stored in the database, oldest first. The
+     * newest stored key that is not retired becomes the signing key; in asymmetric mode the configured key pair
+     * stays the signing key and stored HMAC keys only verify older tokens.
+     */
+    public void load(List<StoredKey> stored) {
+        writeLock.lock();
+        try {
+            Map<String, SigningKey> keys = new LinkedHashMap<>(configured.keys());
+            SigningKey active = configured.active();
+            boolean hmac = "HS256".equalsIgnoreCase(algorithm);
+            for (StoredKey storedKey : stored) {
+                if (storedKey.retired() || storedKey.secret() == null) {
+                    keys.remove(storedKey.keyId());
+                    continue;
+                }
+                SigningKey signingKey = new SigningKey(storedKey.keyId(), hmacKey(storedKey.secret()), null);
+                keys.put(storedKey.keyId(), signingKey);
+                if (hmac) {
+                    active = signingKey;
+                }
+            }
+            if (!keys.containsKey(active.getKeyId())) {
+                // Only when nodes retired and rotated concurrently; never sign with a key others reject silently
+                log.warn("Active signing key {} is marked retired, keeping it until another key is rotated in", active.getKeyId());
+                keys.put(active.getKeyId(), active);
+            }
+            snapshot = new Snapshot(active, Map.copyOf(keys));
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Signing keys loaded, active key id {}, {} keys accepted", snapshot.active().getKeyId(), snapshot.keys().size());
+    }
+
+    private Key verificationKey(String keyId) {
+        // Tokens issued before key ids were stamped carry no kid and were signed with the configured key
+        SigningKey signingKey = snapshot.keys().get(keyId == null ? legacyKeyId : keyId);
+        if (signingKey == null) {
+            throw new JwtException("Unknown signing key id " + keyId);
+        }
+        return signingKey.getPublicKey() != null ? signingKey.getPublicKey() : signingKey.getKey();
+    }
+
+    private static SecretKey hmacKey(String secretKey) {
+        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
+        return Keys.hmacShaKeyFor(keyBytes);
+    }
+
+    private static SigningKey asymmetricKey(String algorithm, String privateKeyPath, String publicKeyPath) {
+        String keyAlgorithm = switch (algorithm.toUpperCase()) {
+            case "ES256" -> "EC";
+            case "EDDSA" -> "Ed25519";
+            default -> throw new IllegalArgumentException("Unsupported token algorithm " + algorithm);
+        };
+        try {
+            KeyPair keyPair;
+            if (privateKeyPath.isBlank()) {
+                log.warn("No {} key pair configured, generating one; tokens will not survive a restart", algorithm);
+                KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+                if ("EC".equals(keyAlgorithm)) {
+                    generator.initialize(new ECGenParameterSpec("secp256r1"));
+                }
+                keyPair = generator.generateKeyPair();
+            } else {
+                KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm);
+                PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(readPem(privateKeyPath)));
+                PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(readPem(publicKeyPath)));
+                keyPair = new KeyPair(publicKey, privateKey);
+            }
+            // The RFC 7638 thumbprint gives every instance sharing the key pair the same kid
+            String keyId = Jwks.builder().key(keyPair.getPublic()).idFromThumbprint().build().getId();
+            return new SigningKey(keyId, keyPair.getPrivate(), keyPair.getPublic());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to load the " + algorithm + " signing key", e);
+        }
+    }
+
+    private static byte[] readPem(String path) {
+        try {
+            String pem = Files.readString(Path.of(path))
+                    .replaceAll("-----(BEGIN|END) [A-Z ]+-----", "")
+                    .replaceAll("\\s", "");
+            return Base64.getDecoder().decode(pem);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read key file " + path, e);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class SigningKey {
+        private final String keyId;
+        /**
+         * The HMAC secret or the private key tokens are signed with.
+         */
+        private final Key key;
+        /**
+         * The key tokens are verified with when it differs from the signing key.
+         */
+        private final PublicKey publicKey;
+    }
+
+    private record Snapshot(SigningKey active, Map<String, SigningKey> keys) {
+    }
+
+    /**
+     * A row of the signing_key table: a rotated HMAC key, or a retired key whose secret has been removed.
+     */
+    public record StoredKey(String keyId, String secret, boolean retired) {
+    }
+}
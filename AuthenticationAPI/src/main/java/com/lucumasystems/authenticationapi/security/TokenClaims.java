@@ -0,0 +1,56 @@
+package com.lucumasystems.authenticationapi.security;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Claim names of the compact token schema and the permission bitmap codec.
+ * <p>
+ * Schema 2 tokens carry the username as {@code sub} and the rest of the principal under short fixed names.
+ * Permissions are a bitmap whose bit positions are permission ids, written as unpadded Base64URL of the
+ * little-endian bytes with trailing zero bytes dropped, so fifty permissions cost a handful of characters
+ * instead of fifty names. Tokens without {@link #SCHEMA} are legacy tokens that keep their details in a map
+ * claim named after the subject.
+ */
+public final class TokenClaims {
+
+    public static final int SCHEMA_VERSION = 2;
+
+    public static final String SCHEMA = "ver";
+    public static final String USER_ID = "uid";
+    public static final String ROLES = "rol";
+    public static final String PERMISSIONS = "pbm";
+    public static final String DICTIONARY_VERSION = "pdv";
+    public static final String USER_VERSION = "uv";
+    public static final String RBAC_VERSION = "rv";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private TokenClaims() {
+    }
+
+    public static String encodeBitmap(long[] bits) {
+        byte[] bytes = new byte[bits.length * Long.BYTES];
+        int length = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (bits[i / Long.BYTES] >>> (8 * (i % Long.BYTES)));
+            if (bytes[i] != 0) {
+                length = i + 1;
+            }
+        }
+        return ENCODER.encodeToString(length == bytes.length ? bytes : Arrays.copyOf(bytes, length));
+    }
+
+    public static long[] decodeBitmap(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return new long[0];
+        }
+        byte[] bytes = DECODER.decode(encoded);
+        long[] bits = new long[(bytes.length + Long.BYTES - 1) / Long.BYTES];
+        for (int i = 0; i < bytes.length; i++) {
+            bits[i / Long.BYTES] |= (bytes[i] & 0xFFL) << (8 * (i % Long.BYTES));
+        }
+        return bits;
+    }
+}
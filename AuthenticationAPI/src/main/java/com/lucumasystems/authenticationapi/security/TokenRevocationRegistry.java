@@ -0,0 +1,95 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.event.InvalidationResyncEvent;
+import com.lucumasystems.authenticationapi.event.SessionChangedEvent;
+import com.lucumasystems.authenticationapi.orm.RefreshTokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory view of the current session of each user, i.e. the jti of the only token that is still valid.
+ * <p>
+ * Loaded from the refresh_token table at startup and kept up to date when tokens are issued or revoked, on this
+ * node or, through the invalidation bus, on another, so a token matching the view is accepted without a database
+ * round trip. A token that does not match is not
+ * rejected here; the caller falls back to the database, which covers tokens issued by other nodes.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TokenRevocationRegistry {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Map<Long, String> currentTokenIds = new ConcurrentHashMap<>();
+    // Advanced before every change from an authoritative source, so a request can tell that one raced with it
+    private final AtomicLong generation = new AtomicLong();
+
+    @EventListener({ApplicationReadyEvent.class, InvalidationResyncEvent.class})
+    public void load() {
+        Map<Long, String> sessions = new ConcurrentHashMap<>();
+        for (Object[] session : refreshTokenRepository.findCurrentSessions()) {
+            sessions.put(((Number) session[0]).longValue(), (String) session[1]);
+        }
+        generation.incrementAndGet();
+        currentTokenIds.clear();
+        currentTokenIds.putAll(sessions);
+        log.info("Loaded {} active sessions", sessions.size());
+    }
+
+    public boolean isCurrent(long userId, String tokenId) {
+        return tokenId.equals(currentTokenIds.get(userId));
+    }
+
+    /**
+     * @return The current generation, to be read before checking a session in the database and passed to
+     * {@link #registerIfUnchanged}.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public void register(long userId, String tokenId) {
+        generation.incrementAndGet();
+        if (tokenId == null) {
+            currentTokenIds.remove(userId);
+        } else {
+            currentTokenIds.put(userId, tokenId);
+        }
+    }
+
+    public void revoke(long userId) {
+        generation.incrementAndGet();
+        currentTokenIds.remove(userId);
+    }
+
+    /**
+     * Remember a session the database confirmed on the request path, unless the view changed after the given
+     * generation was read. The database may have been read just before a revocation or rotation committed; if
+     * its change was applied here before this call, registering would bring the revoked token back for good.
+     * <p>
+     * Writers advance the generation before they change the view, so a change that lands between the check and
+     * the write below is seen by the second check, and the entry is withdrawn again.
+     */
+    public void registerIfUnchanged(long userId, String tokenId, long observedGeneration) {
+        if (generation.get() != observedGeneration) {
+            return;
+        }
+        currentTokenIds.put(userId, tokenId);
+        if (generation.get() != observedGeneration) {
+            currentTokenIds.remove(userId, tokenId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        register(event.getUserId(), event.getTokenId());
+    }
+}
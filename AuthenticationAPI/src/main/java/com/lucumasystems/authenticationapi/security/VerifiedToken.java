@@ -0,0 +1,37 @@
+package com.lucumasystems.authenticationapi.security;
+
+import io.jsonwebtoken.Claims;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A JWT whose signature has already been checked, together with the values the application reads from it.
+ * <p>
+ * {@link com.lucumasystems.authenticationapi.JwtAuthFilter} builds one per request and stores it as a request
+ * attribute; controllers receive it as a handler method argument instead of parsing the header again.
+ */
+@Value
+@Builder
+public class VerifiedToken {
+    public static final String REQUEST_ATTRIBUTE = VerifiedToken.class.getName();
+
+    String token;
+    String tokenId;
+    Claims claims;
+    long userId;
+    String username;
+    List<String> roles;
+    List<String> permissions;
+    Instant expiresAt;
+    /** The user's version when the token was issued; null for tokens issued before versions were stamped. */
+    Long userVersion;
+    /** The RBAC version when the token was issued; null for tokens issued before versions were stamped. */
+    Long rbacVersion;
+
+    public boolean isExpired() {
+        return expiresAt.isBefore(Instant.now());
+    }
+}
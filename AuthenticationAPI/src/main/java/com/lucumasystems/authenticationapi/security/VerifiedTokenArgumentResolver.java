@@ -0,0 +1,35 @@
+package com.lucumasystems.authenticationapi.security;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.MissingRequestHeaderException;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolves {@link VerifiedToken} handler arguments from the token verified by the authentication filter.
+ */
+@Component
+public class VerifiedTokenArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return VerifiedToken.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter,
+                                  ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest,
+                                  WebDataBinderFactory binderFactory) throws Exception {
+        Object verifiedToken = webRequest.getAttribute(VerifiedToken.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (verifiedToken == null) {
+            throw new MissingRequestHeaderException(HttpHeaders.AUTHORIZATION, parameter);
+        }
+        return verifiedToken;
+    }
+}
@@ -0,0 +1,124 @@
+package com.lucumasystems.authenticationapi.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of tokens whose signature has already been verified, keyed by the SHA-256 digest of the token.
+ * <p>
+ * An entry lives until the token's own expiry, so a hit never extends the lifetime of a token. When the cache is
+ * full, expired entries are dropped first and then arbitrary entries until it is back under its low-water mark.
+ * <p>
+ * Entries hold the permission names decoded from the token's bitmap, so the cache is cleared whenever the permission
+ * dictionary changes. A verification that raced with the clear is returned but not cached.
+ */
+@Component
+@Slf4j
+public class VerifiedTokenCache {
+
+    private final Map<String, VerifiedToken> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    // Advanced by every clear, so a verification that started before one is not cached after it
+    private final AtomicLong generation = new AtomicLong();
+    private final boolean enabled;
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public VerifiedTokenCache(@Value("${jwt.claims-cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.claims-cache.max-size:10000}") int maxSize,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.hits = Counter.builder("jwt.claims.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("jwt.claims.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("jwt.claims.cache.evictions").register(meterRegistry);
+        Gauge.builder("jwt.claims.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Return the cached verification result for the token, or verify it and cache the result.
+     *
+     * @param token    The compact JWT.
+     * @param verifier Verifies the signature and decodes the claims on a miss.
+     * @return The verified token.
+     */
+    public VerifiedToken get(String token, Function<String, VerifiedToken> verifier) {
+        if (!enabled) {
+            return verifier.apply(token);
+        }
+        String key = TokenDigests.sha256Hex(token);
+        VerifiedToken cached = entries.get(key);
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                hits.increment();
+                return cached;
+            }
+            entries.remove(key, cached);
+        }
+        misses.increment();
+        long observed = generation.get();
+        VerifiedToken verified = verifier.apply(token);
+        if (!verified.isExpired() && makeRoom()) {
+            entries.put(key, verified);
+            if (generation.get() != observed) {
+                entries.remove(key, verified);
+            }
+        }
+        return verified;
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+        log.info("Verified token cache cleared");
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean makeRoom() {
+        if (entries.size() < maxSize) {
+            return true;
+        }
+        // Only one thread sweeps; others skip caching until there is room again
+        if (!sweeping.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            int lowWaterMark = maxSize - Math.max(1, maxSize / 10);
+            long removed = 0;
+            Iterator<VerifiedToken> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isExpired()) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+            iterator = entries.values().iterator();
+            while (entries.size() > lowWaterMark && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                removed++;
+            }
+            evictions.increment(removed);
+            log.debug("Evicted {} verified tokens from cache", removed);
+            return true;
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.lucumasystems.authenticationapi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
+import com.lucumasystems.authenticationapi.entity.AuditDetail;
+import com.lucumasystems.authenticationapi.error.ExportCapacityExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams audit log entries straight from a database cursor to an output stream.
+ * <p>
+ * The query runs in a read-only transaction with a fetch size, which makes the Postgres driver read through a
+ * server-side cursor {@code fetch-size} rows at a time instead of loading the whole result; each row is written
+ * out as it is read, so memory use does not depend on the size of the export.
+ * <p>
+ * An export holds a pool connection for as long as the client takes to read it, so at most
+ * {@code audit.export.max-concurrent} run at once; callers reserve a {@link Slot} first and further exports are
+ * turned away rather than starving the rest of the application of connections.
+ */
+@Component
+@Slf4j
+public class AuditLogExporter {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final AuditDetail EMPTY_DETAIL = new AuditDetail(null, null, null, null);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Semaphore slots;
+    private final Duration retryAfter;
+
+    public AuditLogExporter(DataSource dataSource,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper,
+                            @Value("${audit.export.fetch-size:1000}") int fetchSize,
+                            @Value("${audit.export.max-concurrent:2}") int maxConcurrent,
+                            @Value("${audit.export.retry-after:PT30S}") Duration retryAfter) {
+        this.slots = new Semaphore(Math.max(1, maxConcurrent));
+        this.retryAfter = retryAfter;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Reserve an export slot, to be closed once the export has been written.
+     *
+     * @throws ExportCapacityExceededException If {@code audit.export.max-concurrent} exports are already running.
+     */
+    public Slot reserve() {
+        if (!slots.tryAcquire()) {
+            throw new ExportCapacityExceededException("Too many audit exports running, try again later", retryAfter);
+        }
+        return new Slot();
+    }
+
+    /**
+     * Write every entry matching the filters, oldest first.
+     *
+     * @param format   NDJSON (one JSON object per line) or CSV with a header row.
+     * @param username Only entries of this user, or null.
+     * @param action   Only entries of this action, or null.
+     * @param from     Only entries logged at or after this time, or null.
+     * @param to       Only entries logged before this time, or null.
+     * @param out      The stream to write to; left open.
+     * @return The number of entries written.
+     */
+    public long export(Format format, String username, AuditAction action, LocalDateTime from, LocalDateTime to, OutputStream out) {
+        // Entries whose actor matched no user keep the given name in the detail
+        StringBuilder sql = new StringBuilder("SELECT a.id, a.user_id, COALESCE(u.username, a.detail ->> 'user') AS username, " +
+                "a.action, a.detail, a.timestamp FROM audit_log a LEFT JOIN user_details u ON u.id = a.user_id WHERE true");
+        List<Object> args = new ArrayList<>();
+        if (username != null) {
+            sql.append(" AND (a.user_id = (SELECT id FROM user_details WHERE username = ?) OR (a.user_id IS NULL AND a.detail ->> 'user' = ?))");
+            args.add(username);
+            args.add(username);
+        }
+        if (action != null) {
+            sql.append(" AND a.action = ?");
+            args.add((short) action.getCode());
+        }
+        if (from != null) {
+            sql.append(" AND a.timestamp >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND a.timestamp < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        sql.append(" ORDER BY a.timestamp, a.id");
+        Long written = transactionTemplate.execute(status -> {
+            try {
+                return format == Format.CSV
+                        ? writeCsv(sql.toString(), args.toArray(), out)
+                        : writeNdjson(sql.toString(), args.toArray(), out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("Exported {} audit log entries as {}", written, format);
+        return written == null ? 0 : written;
+    }
+
+    private long writeNdjson(String sql, Object[] args, OutputStream out) throws IOException {
+        long[] count = new long[1];
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            jdbcTemplate.query(sql, (RowCallbackHandler) row -> {
+                try {
+                    AuditDetail detail = detail(row);
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", row.getLong("id"));
+                    generator.writeObjectField("userId", userId(row));
+                    generator.writeStringField("username", row.getString("username"));
+                    generator.writeStringField("action", action(row));
+                    generator.writeStringField("ip", detail.ip());
+                    generator.writeStringField("userAgent", detail.userAgent());
+                    generator.writeObjectField("targetUserId", detail.targetUserId());
+                    generator.writeStringField("timestamp", timestamp(row));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, args);
+        }
+        return count[0];
+    }
+
+    private long writeCsv(String sql, Object[] args, OutputStream out) throws IOException {
+        long[] count = new long[1];
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,user_id,username,action,ip,user_agent,target_user_id,timestamp\r\n");
+        jdbcTemplate.query(sql, (RowCallbackHandler) row -> {
+            try {
+                AuditDetail detail = detail(row);
+                writer.write(Long.toString(row.getLong("id")));
+                writer.write(',');
+                writer.write(Objects.toString(userId(row), ""));
+                writer.write(',');
+                writer.write(csv(row.getString("username")));
+                writer.write(',');
+                writer.write(csv(action(row)));
+                writer.write(',');
+                writer.write(csv(detail.ip()));
+                writer.write(',');
+                writer.write(csv(detail.userAgent()));
+                writer.write(',');
+                writer.write(Objects.toString(detail.targetUserId(), ""));
+                writer.write(',');
+                writer.write(csv(timestamp(row)));
+                writer.write("\r\n");
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, args);
+        writer.flush();
+        return count[0];
+    }
+
+    private static Long userId(ResultSet row) throws SQLException {
+        long userId = row.getLong("user_id");
+        return row.wasNull() ? null : userId;
+    }
+
+    private static String action(ResultSet row) throws SQLException {
+        short code = row.getShort("action");
+        return row.wasNull() ? null : AuditAction.fromCode(code).name();
+    }
+
+    private AuditDetail detail(ResultSet row) throws SQLException {
+        String json = row.getString("detail");
+        if (json == null) {
+            return EMPTY_DETAIL;
+        }
+        try {
+            return objectMapper.readValue(json, AuditDetail.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable detail on audit entry {}: {}", row.getLong("id"), e.getMessage());
+            return EMPTY_DETAIL;
+        }
+    }
+
+    private static String timestamp(ResultSet row) throws SQLException {
+        Timestamp timestamp = row.getTimestamp("timestamp");
+        return timestamp == null ? null : timestamp.toLocalDateTime().toString();
+    }
+
+    /**
+     * A reserved export slot; closing it more than once releases it only once.
+     */
+    public final class Slot implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Slot() {
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                slots.release();
+            }
+        }
+    }
+
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        // A leading formula character would be evaluated by spreadsheet applications
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,43 +1,108 @@
 package com.lucumasystems.authenticationapi.service;
 
+import com.lucumasystems.authenticationapi.dto.AuditLogPage;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
+import com.lucumasystems.authenticationapi.entity.AuditDetail;
 import com.lucumasystems.authenticationapi.entity.AuditLog;
 import com.lucumasystems.authenticationapi.orm.AuditLogRepository;
+import com.lucumasystems.authenticationapi.orm.AuditLogSpecifications;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class AuditLogService {
 
+    private static final int MAX_USER_AGENT_LENGTH = 256;
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("id"));
+
     private final AuditLogRepository auditLogRepository;
+    private final AuditLogWriter auditLogWriter;
+    private final AuditPartitionMaintainer partitionMaintainer;
+    private final AuditRollupService auditRollupService;
+    private final UserRepository userRepository;
+    @Value("${audit.query.max-page-size:500}")
+    private int maxPageSize;
 
     /**
      * Log an action performed by a user.
+     * <p>
+     * The entry is counted by {@link AuditRollupService} and written asynchronously by {@link AuditLogWriter}. Inside a transaction it is queued only once
+     * the transaction commits, so a rolled back change leaves no audit entry, as when the entry was saved in it.
+     * When called while handling a request, the client address and user agent are kept in the entry's detail.
      *
+     * @param userId   The id of the user performing the action, or null when only the name is known; the writer
+     *                 then looks the id up by name.
      * @param username The username of the user performing the action.
-     * @param action   The action performed (e.g., LOGIN, LOGOUT, FAILED_ATTEMPT).
+     * @param action   The action performed.
+     */
+    public void logAction(Long userId, String username, AuditAction action) {
+        logAction(userId, username, action, null);
+    }
+
+    /**
+     * Log an action performed by a user on another user.
+     *
+     * @param userId       The id of the user performing the action, or null when only the name is known.
+     * @param username     The username of the user performing the action.
+     * @param action       The action performed.
+     * @param targetUserId The id of the user the action was performed on.
      */
-    public void logAction(String username, String action) {
+    public void logAction(Long userId, String username, AuditAction action, Long targetUserId) {
         AuditLog auditLog = new AuditLog();
+        auditLog.setUserId(userId);
         auditLog.setUsername(username);
         auditLog.setAction(action);
+        auditLog.setDetail(detail(targetUserId));
         auditLog.setTimestamp(LocalDateTime.now());
-        auditLogRepository.save(auditLog);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accept(auditLog);
+                }
+            });
+        } else {
+            accept(auditLog);
+        }
     }
 
-    /**
-     * Retrieve all audit logs.
-     *
-     * @return A list of all audit logs.
-     */
-    public List<AuditLog> getAllLogs() {
-        return auditLogRepository.findAll();
+    private static AuditDetail detail(Long targetUserId) {
+        String ip = null;
+        String userAgent = null;
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            ip = request.getRemoteAddr();
+            userAgent = request.getHeader(HttpHeaders.USER_AGENT);
+            if (userAgent != null && userAgent.length() > MAX_USER_AGENT_LENGTH) {
+                userAgent = userAgent.substring(0, MAX_USER_AGENT_LENGTH);
+            }
+        }
+        AuditDetail detail = new AuditDetail(ip, userAgent, targetUserId, null);
+        return detail.isEmpty() ? null : detail;
+    }
+
+    private void accept(AuditLog auditLog) {
+        auditRollupService.record(auditLog);
+        auditLogWriter.enqueue(auditLog);
     }
 
     /**
@@ -52,38 +117,83 @@ public class AuditLogService {
     }
 
     /**
-     * Retrieve audit logs for a specific user.
+     * Retrieve one page of audit logs, newest first, matching every filter that is set.
      *
-     * @param username The username to filter logs.
-     * @return A list of audit logs for the specified user.
+     * @param username Only entries of this user, or null.
+     * @param action   Only entries of this action (e.g., LOGIN, LOGOUT, FAILED_ATTEMPT), or null.
+     * @throws IllegalArgumentException If the action or the cursor is invalid.
+     * @param from     Only entries logged at or after this time, or null.
+     * @param to       Only entries logged before this time, or null.
+     * @param cursor   The nextCursor of the previous page, or null for the first page.
+     * @param limit    The page size.
+     * @return The page and the cursor of the next one.
      */
-    public List<AuditLog> getLogsByUsername(String username) {
-        return auditLogRepository.findAll().stream()
-                .filter(log -> log.getUsername().equalsIgnoreCase(username))
-                .toList();
+    public AuditLogPage search(String username, String action, LocalDateTime from, LocalDateTime to, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        AuditLog position = cursor == null || cursor.isBlank() ? new AuditLog() : decodeCursor(cursor);
+        Specification<AuditLog> filter = Specification.where(hasUser(username))
+                .and(AuditLogSpecifications.hasAction(AuditAction.parse(action)))
+                .and(AuditLogSpecifications.loggedFrom(from))
+                .and(AuditLogSpecifications.loggedBefore(to))
+                .and(AuditLogSpecifications.after(position.getTimestamp(), position.getId()));
+        // One row more than the page tells whether there is a next page without a count query
+        List<AuditLog> rows = auditLogRepository.findBy(filter, query -> query.sortBy(NEWEST_FIRST).limit(size + 1).all());
+        if (rows.size() <= size) {
+            return AuditLogPage.builder().items(rows).build();
+        }
+        List<AuditLog> items = rows.subList(0, size);
+        AuditLog last = items.get(size - 1);
+        return AuditLogPage.builder().items(List.copyOf(items)).nextCursor(encodeCursor(last)).build();
     }
 
     /**
-     * Retrieve audit logs for a specific action.
+     * Delete all audit logs before a specific date.
+     * <p>
+     * Months that end before the date are dropped as whole partitions; only the month the date falls in is
+     * deleted from row by row.
      *
-     * @param action The action to filter logs (e.g., LOGIN, LOGOUT, FAILED_ATTEMPT).
-     * @return A list of audit logs for the specified action.
+     * @param beforeDate The cutoff date for deletion.
+     * @return The number of dropped partitions and of individually deleted logs.
      */
-    public List<AuditLog> getLogsByAction(String action) {
-        return auditLogRepository.findAll().stream()
-                .filter(log -> log.getAction().equalsIgnoreCase(action))
-                .toList();
+    public Purge deleteLogsBeforeDate(LocalDateTime beforeDate) {
+        int droppedPartitions = partitionMaintainer.dropPartitionsBefore(beforeDate);
+        int deletedLogs = auditLogRepository.deleteByTimestampBefore(beforeDate);
+        return new Purge(droppedPartitions, deletedLogs);
     }
 
     /**
-     * Delete all audit logs before a specific date.
-     *
-     * @param beforeDate The cutoff date for deletion.
+     * Entries are stored by user id; a name that matches no user can still appear in the detail of entries such
+     * as failed logins.
+     */
+    private Specification<AuditLog> hasUser(String username) {
+        if (username == null) {
+            return null;
+        }
+        return userRepository.findIdByUsername(username)
+                .map(AuditLogSpecifications::hasUserId)
+                .orElseGet(() -> AuditLogSpecifications.hasUnmatchedUsername(username));
+    }
+
+    public record Purge(int droppedPartitions, int deletedLogs) {
+    }
+
+    private static String encodeCursor(AuditLog last) {
+        String position = last.getTimestamp() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return An entry holding only the timestamp and id the cursor points at.
      */
-    public void deleteLogsBeforeDate(LocalDateTime beforeDate) {
-        List<AuditLog> logsToDelete = auditLogRepository.findAll().stream()
-                .filter(log -> log.getTimestamp().isBefore(beforeDate))
-                .toList();
-        auditLogRepository.deleteAll(logsToDelete);
+    private static AuditLog decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            AuditLog position = new AuditLog();
+            position.setTimestamp(LocalDateTime.parse(parts[0]));
+            position.setId(Long.parseLong(parts[1]));
+            return position;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
     }
 }
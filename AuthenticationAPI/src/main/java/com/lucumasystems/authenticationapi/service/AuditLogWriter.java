@@ -0,0 +1,426 @@
+package com.lucumasystems.authenticationapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucumasystems.authenticationapi.entity.AuditDetail;
+import com.lucumasystems.authenticationapi.entity.AuditLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes audit entries off the request path.
+ * <p>
+ * Request threads put entries into a bounded queue and return; a single writer thread drains it and inserts each
+ * batch with one multi-row INSERT, as soon as {@code batch-size} entries are waiting or the oldest has waited
+ * {@code flush-interval}. When the queue is full the overflow policy decides: BLOCK waits up to
+ * {@code block-timeout} for room and then drops, DROP drops at once, SPILL appends the entry to a local file that
+ * the writer replays once the queue has drained, resuming where it stopped after a failure and setting unreadable
+ * lines aside in a quarantine file. Dropped entries are counted, never silent. On shutdown the
+ * writer stops accepting entries and flushes what is queued. Entries logged with only a username get their user
+ * id here, with one lookup per batch, so callers never wait for it.
+ */
+@Component
+@Slf4j
+public class AuditLogWriter {
+
+    public enum OverflowPolicy {
+        BLOCK, DROP, SPILL
+    }
+
+    private static final int COLUMNS = 4;
+    private static final int MAX_BATCH_SIZE = 65_535 / COLUMNS;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<AuditLog> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Duration blockTimeout;
+    private final Duration shutdownTimeout;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillFile;
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private final Counter written;
+    private final Counter droppedFull;
+    private final Counter droppedFailed;
+    private final Counter spilled;
+    private final Counter quarantined;
+    private final Timer flushTimer;
+    private Thread writer;
+    private volatile boolean running = true;
+    private long replayNotBefore = System.nanoTime();
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          ObjectMapper objectMapper,
+                          @Value("${audit.writer.queue-capacity:10000}") int queueCapacity,
+                          @Value("${audit.writer.batch-size:500}") int batchSize,
+                          @Value("${audit.writer.flush-interval:PT0.2S}") Duration flushInterval,
+                          @Value("${audit.writer.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                          @Value("${audit.writer.block-timeout:PT1S}") Duration blockTimeout,
+                          @Value("${audit.writer.spill-file:audit-spill.ndjson}") String spillFile,
+                          @Value("${audit.writer.shutdown-timeout:PT10S}") Duration shutdownTimeout,
+                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.spillFile = Path.of(spillFile);
+        this.shutdownTimeout = shutdownTimeout;
+        this.written = Counter.builder("audit.log.written").register(meterRegistry);
+        this.droppedFull = Counter.builder("audit.log.dropped").tag("reason", "queue-full").register(meterRegistry);
+        this.droppedFailed = Counter.builder("audit.log.dropped").tag("reason", "write-failed").register(meterRegistry);
+        this.spilled = Counter.builder("audit.log.spilled").register(meterRegistry);
+        this.quarantined = Counter.builder("audit.log.quarantined").register(meterRegistry);
+        this.flushTimer = Timer.builder("audit.log.flush").register(meterRegistry);
+        Gauge.builder("audit.log.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    /**
+     * Start the writer thread once the bean is fully initialised; entries queued before that wait for it.
+     */
+    @PostConstruct
+    public void start() {
+        writer = Thread.ofPlatform().name("audit-log-writer").daemon().start(this::drain);
+    }
+
+    /**
+     * Queue an entry for writing; never waits for the database.
+     */
+    public void enqueue(AuditLog auditLog) {
+        if (!running) {
+            // Shutting down: the writer may already have drained the queue
+            write(List.of(auditLog));
+            return;
+        }
+        if (queue.offer(auditLog)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    if (queue.offer(auditLog, blockTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                drop(auditLog);
+            }
+            case DROP -> drop(auditLog);
+            case SPILL -> spill(List.of(auditLog));
+        }
+    }
+
+    /**
+     * Stop accepting entries into the queue and write everything still queued.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+            writer.join(shutdownTimeout.toMillis());
+        }
+        if (writer != null && writer.isAlive()) {
+            log.warn("Audit log writer did not finish within {}; {} entries left unwritten", shutdownTimeout, queue.size());
+            return;
+        }
+        // Entries queued by requests that raced with the writer's final drain
+        List<AuditLog> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        write(rest);
+    }
+
+    private void drain() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // Shutdown; the remaining entries are written below
+            }
+            write(batch);
+            batch.clear();
+            if (queue.isEmpty() && running) {
+                try {
+                    replaySpill();
+                } catch (RuntimeException e) {
+                    log.error("Audit spill replay failed", e);
+                    replayNotBefore = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                }
+            }
+        }
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Wait for the first entry, then take more until the batch is full or the first has waited the flush interval.
+     */
+    private void collect(List<AuditLog> batch) throws InterruptedException {
+        AuditLog first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            AuditLog next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<AuditLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flushTimer.record(() -> insert(batch));
+            written.increment(batch.size());
+        } catch (DataAccessException e) {
+            if (overflowPolicy == OverflowPolicy.SPILL) {
+                log.warn("Could not write {} audit entries, spilling them: {}", batch.size(), e.getMessage());
+                spill(batch);
+            } else {
+                log.error("Could not write {} audit entries, dropping them", batch.size(), e);
+                droppedFailed.increment(batch.size());
+            }
+        } catch (RuntimeException e) {
+            // Not a database problem, so writing the same entries again would fail again; the writer thread must
+            // survive it, or the queue fills and every later entry is dropped
+            log.error("Could not write {} audit entries, dropping them", batch.size(), e);
+            droppedFailed.increment(batch.size());
+        }
+    }
+
+    private void insert(List<AuditLog> batch) {
+        resolveUserIds(batch);
+        StringBuilder sql = new StringBuilder("INSERT INTO audit_log (user_id, action, detail, timestamp) VALUES ");
+        Object[] args = new Object[batch.size() * COLUMNS];
+        for (int i = 0; i < batch.size(); i++) {
+            AuditLog entry = batch.get(i);
+            sql.append(i == 0 ? "(?, ?, ?::jsonb, ?)" : ", (?, ?, ?::jsonb, ?)");
+            args[i * COLUMNS] = entry.getUserId();
+            args[i * COLUMNS + 1] = entry.getAction() == null ? null : (short) entry.getAction().getCode();
+            args[i * COLUMNS + 2] = json(entry.getDetail());
+            args[i * COLUMNS + 3] = Timestamp.valueOf(entry.getTimestamp());
+        }
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    /**
+     * Look up the ids of entries logged with only a username, in one query per batch; a name that matches no user
+     * is kept in the entry's detail instead.
+     */
+    private void resolveUserIds(List<AuditLog> batch) {
+        Set<String> usernames = new HashSet<>();
+        for (AuditLog entry : batch) {
+            if (entry.getUserId() == null && entry.getUsername() != null) {
+                usernames.add(entry.getUsername());
+            }
+        }
+        if (usernames.isEmpty()) {
+            return;
+        }
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("SELECT id, username FROM user_details WHERE username = ANY (?)",
+                (RowCallbackHandler) row -> ids.put(row.getString("username"), row.getLong("id")),
+                (Object) usernames.toArray(String[]::new));
+        for (AuditLog entry : batch) {
+            if (entry.getUserId() != null || entry.getUsername() == null) {
+                continue;
+            }
+            Long id = ids.get(entry.getUsername());
+            if (id != null) {
+                entry.setUserId(id);
+            } else {
+                AuditDetail detail = entry.getDetail() == null ? new AuditDetail(null, null, null, null) : entry.getDetail();
+                entry.setDetail(detail.withUsername(entry.getUsername()));
+            }
+        }
+    }
+
+    private String json(AuditDetail detail) {
+        if (detail == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(detail);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize audit detail", e);
+        }
+    }
+
+    private void drop(AuditLog auditLog) {
+        droppedFull.increment();
+        log.warn("Audit queue full, dropped {} by {}", auditLog.getAction(), auditLog.getUsername());
+    }
+
+    private void spill(List<AuditLog> entries) {
+        spillLock.lock();
+        try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (AuditLog entry : entries) {
+                out.write(objectMapper.writeValueAsString(entry));
+                out.newLine();
+            }
+            spilled.increment(entries.size());
+        } catch (IOException e) {
+            log.error("Could not spill {} audit entries to {}", entries.size(), spillFile, e);
+            droppedFailed.increment(entries.size());
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Move the spill file aside and write its entries; a file left by a previous run is picked up the same way.
+     * <p>
+     * The number of lines already applied is kept next to the file after every batch, so a replay interrupted by
+     * a database error resumes after the last written batch instead of writing it again. Lines that cannot be
+     * read, such as one cut short by a crash while spilling, and batches that fail for a reason other than the
+     * database are moved to a quarantine file instead of blocking the replay.
+     */
+    private void replaySpill() {
+        if (System.nanoTime() - replayNotBefore < 0) {
+            return;
+        }
+        Path replay = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        Path progress = spillFile.resolveSibling(spillFile.getFileName() + ".replay.progress");
+        spillLock.lock();
+        try {
+            if (!Files.exists(replay)) {
+                if (!Files.exists(spillFile)) {
+                    return;
+                }
+                Files.deleteIfExists(progress);
+                Files.move(spillFile, replay, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.error("Could not move audit spill file {} for replay", spillFile, e);
+            return;
+        } finally {
+            spillLock.unlock();
+        }
+        try (BufferedReader in = Files.newBufferedReader(replay, StandardCharsets.UTF_8)) {
+            long applied = readProgress(progress);
+            long lineNumber = 0;
+            List<AuditLog> batch = new ArrayList<>(batchSize);
+            List<String> lines = new ArrayList<>(batchSize);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (++lineNumber <= applied || line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(objectMapper.readValue(line, AuditLog.class));
+                    lines.add(line);
+                } catch (JsonProcessingException e) {
+                    log.warn("Unreadable line {} in audit spill file {}, quarantining it: {}", lineNumber, replay, e.getOriginalMessage());
+                    quarantine(List.of(line));
+                }
+                if (batch.size() == batchSize) {
+                    replayBatch(batch, lines);
+                    saveProgress(progress, lineNumber);
+                }
+            }
+            replayBatch(batch, lines);
+            Files.delete(replay);
+            Files.deleteIfExists(progress);
+            log.info("Replayed spilled audit entries from {}", replay);
+        } catch (IOException | DataAccessException e) {
+            // Kept for the next attempt, which resumes after the last batch recorded in the progress file
+            log.warn("Could not replay audit spill file {}: {}", replay, e.getMessage());
+            replayNotBefore = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        }
+    }
+
+    /**
+     * Write one batch of the replay; database errors are left to the caller so the replay is retried later.
+     */
+    private void replayBatch(List<AuditLog> batch, List<String> lines) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flushTimer.record(() -> insert(batch));
+            written.increment(batch.size());
+        } catch (DataAccessException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("Could not replay {} spilled audit entries, quarantining them", batch.size(), e);
+            quarantine(lines);
+        }
+        batch.clear();
+        lines.clear();
+    }
+
+    private void quarantine(List<String> lines) throws IOException {
+        Path quarantine = spillFile.resolveSibling(spillFile.getFileName() + ".quarantine");
+        Files.write(quarantine, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        quarantined.increment(lines.size());
+    }
+
+    private static long readProgress(Path progress) throws IOException {
+        if (!Files.exists(progress)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(progress, StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Unreadable replay progress in " + progress, e);
+        }
+    }
+
+    /**
+     * Replace the progress file atomically, so a crash leaves either the old count or the new one.
+     */
+    private static void saveProgress(Path progress, long lines) throws IOException {
+        Path next = progress.resolveSibling(progress.getFileName() + ".tmp");
+        Files.writeString(next, Long.toString(lines), StandardCharsets.UTF_8);
+        Files.move(next, progress, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
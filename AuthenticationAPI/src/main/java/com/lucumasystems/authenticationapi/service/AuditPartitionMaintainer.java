@@ -0,0 +1,169 @@
+package com.lucumasystems.authenticationapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of audit_log in shape.
+ * <p>
+ * Partitions for the current month and {@code audit.partitions.months-ahead} months after it are created in
+ * advance, so new entries never land in the default partition. Retention drops whole months: a partition is
+ * detached and dropped, which frees its space at once instead of deleting and vacuuming row by row. Only one node
+ * does the work at a time, guarded by an advisory lock.
+ */
+@Component
+@Slf4j
+public class AuditPartitionMaintainer {
+
+    private static final String PARENT = "audit_log";
+    private static final String DEFAULT_PARTITION = "audit_log_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile("audit_log_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Counter created;
+    private final Counter dropped;
+
+    public AuditPartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${audit.partitions.months-ahead:3}") int monthsAhead,
+                                    @Value("${audit.retention.months:0}") int retentionMonths,
+                                    MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.created = Counter.builder("audit.partitions.created").register(meterRegistry);
+        this.dropped = Counter.builder("audit.partitions.dropped").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${audit.partitions.cron:0 15 3 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        withLock(false, () -> {
+            for (int i = 0; i <= monthsAhead; i++) {
+                ensurePartition(current.plusMonths(i));
+            }
+            if (retentionMonths > 0) {
+                dropBefore(current.minusMonths(retentionMonths));
+            }
+        });
+    }
+
+    /**
+     * Drop every partition that holds only entries older than the given time. Waits for a node that is maintaining
+     * the partitions to finish rather than skipping, since the caller deletes whatever is left row by row.
+     *
+     * @return The number of partitions dropped.
+     */
+    public int dropPartitionsBefore(LocalDateTime before) {
+        // Months before the one containing the cutoff end at or before it
+        int[] count = new int[1];
+        withLock(true, () -> count[0] = dropBefore(YearMonth.from(before)));
+        return count[0];
+    }
+
+    public boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid " +
+                        "WHERE c.relname = ? AND c.relnamespace = current_schema()::regnamespace)", Boolean.class, PARENT);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    /**
+     * @param wait Whether to wait for the lock; otherwise the work is skipped when another node holds it.
+     */
+    private void withLock(boolean wait, Runnable work) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!isPartitioned()) {
+                log.debug("{} is not partitioned, nothing to maintain", PARENT);
+                return;
+            }
+            if (wait) {
+                jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(hashtext(?))", Object.class, PARENT);
+                work.run();
+                return;
+            }
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(hashtext(?))", Boolean.class, PARENT);
+            if (!Boolean.TRUE.equals(locked)) {
+                log.debug("Another node is maintaining {} partitions", PARENT);
+                return;
+            }
+            work.run();
+        });
+    }
+
+    private void ensurePartition(YearMonth month) {
+        String name = partitionName(month);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+        if (Boolean.TRUE.equals(exists)) {
+            return;
+        }
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        Boolean misplaced = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ?)", Boolean.class, from, to);
+        if (Boolean.TRUE.equals(misplaced)) {
+            // Postgres refuses a partition whose range has rows in the default partition: move them in first
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + PARENT + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ? RETURNING *) " +
+                    "INSERT INTO " + name + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ATTACH PARTITION " + name + bounds(from, to));
+            log.warn("Created audit partition {} and moved {} entries into it from the default partition", name, moved);
+        } else {
+            jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + PARENT + bounds(from, to));
+            log.info("Created audit partition {}", name);
+        }
+        created.increment();
+    }
+
+    private int dropBefore(YearMonth firstKept) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass(?)",
+                String.class, PARENT);
+        int count = 0;
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (month.isBefore(firstKept)) {
+                jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Dropped audit partition {}", partition);
+                dropped.increment();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "audit_log_p" + month.format(SUFFIX);
+    }
+
+    private static String bounds(LocalDateTime from, LocalDateTime to) {
+        return " FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+    }
+}
@@ -0,0 +1,253 @@
+package com.lucumasystems.authenticationapi.service;
+
+import com.lucumasystems.authenticationapi.dto.AuditRollupPoint;
+import com.lucumasystems.authenticationapi.dto.AuditRollupSeries;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
+import com.lucumasystems.authenticationapi.entity.AuditLog;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Per-minute counts of audit actions, kept in memory as entries are logged and added to the audit_rollup table
+ * periodically.
+ * <p>
+ * Every action is counted per minute for all users together; actions listed in
+ * {@code audit.rollup.per-user-actions} are also counted per user, which answers questions like "failed attempts
+ * per user in the last hour". Each node adds its own counts with an additive upsert, so the table holds the
+ * cluster-wide totals and dashboards read a few rows per minute instead of scanning audit_log. Counts not yet
+ * flushed are reported with the stored ones.
+ * <p>
+ * Rows are keyed like audit_log, on the action's smallint code and the user id (0 for the all-users total), so a
+ * renamed user keeps their counts and the key stays narrow.
+ */
+@Component
+@Slf4j
+public class AuditRollupService {
+
+    private static final long ALL_USERS = 0;
+    private static final Set<String> GRANULARITIES = Set.of("minute", "hour", "day");
+    // The order of the query, which sorts on the action code
+    private static final Comparator<PointKey> POINT_ORDER = Comparator.comparing(PointKey::bucket)
+            .thenComparingInt(key -> key.action().getCode());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final Set<AuditAction> perUserActions;
+    private final int maxPoints;
+    private final Map<Key, LongAdder> pending = new ConcurrentHashMap<>();
+    private final Timer flushTimer;
+
+    public AuditRollupService(JdbcTemplate jdbcTemplate,
+                              UserRepository userRepository,
+                              @Value("${audit.rollup.per-user-actions:FAILED_ATTEMPT}") String perUserActions,
+                              @Value("${audit.rollup.max-points:10000}") int maxPoints,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.perUserActions = Arrays.stream(perUserActions.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(AuditAction::parse)
+                .collect(Collectors.toUnmodifiableSet());
+        this.maxPoints = maxPoints;
+        this.flushTimer = Timer.builder("audit.rollup.flush").register(meterRegistry);
+        Gauge.builder("audit.rollup.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Count a logged entry.
+     */
+    public void record(AuditLog auditLog) {
+        if (auditLog.getAction() == null || auditLog.getTimestamp() == null) {
+            return;
+        }
+        LocalDateTime bucket = auditLog.getTimestamp().truncatedTo(ChronoUnit.MINUTES);
+        AuditAction action = auditLog.getAction();
+        pending.computeIfAbsent(new Key(bucket, action, ALL_USERS, null), key -> new LongAdder()).increment();
+        if (!perUserActions.contains(action)) {
+            return;
+        }
+        if (auditLog.getUserId() != null) {
+            pending.computeIfAbsent(new Key(bucket, action, auditLog.getUserId(), null), key -> new LongAdder()).increment();
+        } else if (auditLog.getUsername() != null) {
+            // Logged with only a name, e.g. a failed attempt: the id is looked up when flushing
+            pending.computeIfAbsent(new Key(bucket, action, ALL_USERS, auditLog.getUsername()), key -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Add the counts gathered since the last flush to the rollup table. Counts kept by name are stored under the
+     * user's id, looked up in one query; names that match no user are only counted in the total.
+     */
+    @Scheduled(fixedDelayString = "${audit.rollup.flush-interval:PT1M}")
+    @PreDestroy
+    public void flush() {
+        List<Key> keys = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        Set<String> usernames = new HashSet<>();
+        LocalDateTime stale = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(2);
+        for (Map.Entry<Key, LongAdder> entry : pending.entrySet()) {
+            // An increment racing with the reset is kept for the next flush
+            long count = entry.getValue().sumThenReset();
+            if (count > 0) {
+                Key key = entry.getKey();
+                keys.add(key);
+                counts.add(count);
+                if (key.username() != null) {
+                    usernames.add(key.username());
+                }
+            } else if (entry.getKey().bucket().isBefore(stale)) {
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        try {
+            Map<String, Long> ids = new HashMap<>();
+            if (!usernames.isEmpty()) {
+                jdbcTemplate.query("SELECT id, username FROM user_details WHERE username = ANY (?)",
+                        (RowCallbackHandler) row -> ids.put(row.getString("username"), row.getLong("id")),
+                        (Object) usernames.toArray(String[]::new));
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                Key key = keys.get(i);
+                Long userId = key.username() == null ? Long.valueOf(key.userId()) : ids.get(key.username());
+                if (userId != null) {
+                    rows.add(new Object[]{Timestamp.valueOf(key.bucket()), key.action().getCode(), userId, counts.get(i)});
+                }
+            }
+            flushTimer.record(() -> jdbcTemplate.batchUpdate(
+                    "INSERT INTO audit_rollup (bucket, action, user_id, count) VALUES (?, ?, ?, ?) " +
+                            "ON CONFLICT (bucket, action, user_id) DO UPDATE SET count = audit_rollup.count + EXCLUDED.count",
+                    rows));
+            log.debug("Flushed {} audit rollup counters", rows.size());
+        } catch (DataAccessException e) {
+            log.warn("Could not flush {} audit rollup counters, keeping them for the next flush: {}", keys.size(), e.getMessage());
+            for (int i = 0; i < keys.size(); i++) {
+                pending.computeIfAbsent(keys.get(i), key -> new LongAdder()).add(counts.get(i));
+            }
+        }
+    }
+
+    /**
+     * Action counts per time bucket, oldest first, at most {@code audit.rollup.max-points} of them.
+     *
+     * @param action      Only this action, or null for all.
+     * @param username    Counts of this user, for actions counted per user; null for all users together.
+     * @param from        Start of the range, inclusive.
+     * @param to          End of the range, exclusive.
+     * @param granularity minute, hour or day.
+     * @return One point per bucket and action that has a count, and whether later buckets were left out.
+     */
+    public AuditRollupSeries query(String action, String username, LocalDateTime from, LocalDateTime to, String granularity) {
+        String unit = granularity == null ? "minute" : granularity.toLowerCase();
+        if (!GRANULARITIES.contains(unit)) {
+            throw new IllegalArgumentException("Granularity must be one of " + GRANULARITIES);
+        }
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("A range with from before to is required");
+        }
+        AuditAction auditAction = AuditAction.parse(action);
+        long user = ALL_USERS;
+        if (username != null) {
+            Long userId = userRepository.findIdByUsername(username).orElse(null);
+            if (userId == null) {
+                return AuditRollupSeries.builder().points(List.of()).truncated(false).build();
+            }
+            user = userId;
+        }
+        StringBuilder sql = new StringBuilder("SELECT date_trunc('" + unit + "', bucket) AS period, action, sum(count) AS total " +
+                "FROM audit_rollup WHERE user_id = ? AND bucket >= ? AND bucket < ?");
+        List<Object> args = new ArrayList<>(List.of(user, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        if (auditAction != null) {
+            sql.append(" AND action = ?");
+            args.add(auditAction.getCode());
+        }
+        // One row more than the limit tells whether the range was cut short
+        sql.append(" GROUP BY period, action ORDER BY period, action LIMIT ").append(maxPoints + 1);
+        List<Map.Entry<PointKey, Long>> rows = new ArrayList<>();
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) row -> rows.add(Map.entry(
+                new PointKey(row.getTimestamp("period").toLocalDateTime(), AuditAction.fromCode(row.getInt("action"))), row.getLong("total"))),
+                args.toArray());
+        // When cut short, stop before the first bucket that did not fit whole, so no bucket is reported partially,
+        // unless the limit is smaller than a single bucket
+        boolean cut = rows.size() > maxPoints;
+        LocalDateTime end = cut ? rows.get(maxPoints).getKey().bucket() : null;
+        boolean wholeBuckets = !cut || rows.get(0).getKey().bucket().isBefore(end);
+        Map<PointKey, Long> totals = new TreeMap<>(POINT_ORDER);
+        for (int i = 0; i < Math.min(rows.size(), maxPoints); i++) {
+            Map.Entry<PointKey, Long> row = rows.get(i);
+            if (!cut || !wholeBuckets || row.getKey().bucket().isBefore(end)) {
+                totals.merge(row.getKey(), row.getValue(), Long::sum);
+            }
+        }
+        long selectedUser = user;
+        pending.forEach((key, count) -> {
+            long value = count.sum();
+            LocalDateTime period = truncate(key.bucket(), unit);
+            boolean sameUser = key.username() == null ? key.userId() == selectedUser : key.username().equals(username);
+            if (value > 0 && sameUser && !key.bucket().isBefore(from) && key.bucket().isBefore(to)
+                    && (end == null || period.isBefore(end))
+                    && (auditAction == null || auditAction == key.action())) {
+                totals.merge(new PointKey(period, key.action()), value, Long::sum);
+            }
+        });
+        boolean truncated = cut || totals.size() > maxPoints;
+        List<AuditRollupPoint> points = totals.entrySet().stream()
+                .limit(maxPoints)
+                .map(entry -> AuditRollupPoint.builder()
+                        .bucket(entry.getKey().bucket())
+                        .action(entry.getKey().action().name())
+                        .username(username)
+                        .count(entry.getValue())
+                        .build())
+                .toList();
+        return AuditRollupSeries.builder().points(points).truncated(truncated).build();
+    }
+
+    private static LocalDateTime truncate(LocalDateTime time, String unit) {
+        return switch (unit) {
+            case "hour" -> time.truncatedTo(ChronoUnit.HOURS);
+            case "day" -> time.truncatedTo(ChronoUnit.DAYS);
+            default -> time.truncatedTo(ChronoUnit.MINUTES);
+        };
+    }
+
+    /**
+     * @param userId   The user counted, or {@link #ALL_USERS}.
+     * @param username Set instead of the id for entries logged with only a name.
+     */
+    private record Key(LocalDateTime bucket, AuditAction action, long userId, String username) {
+    }
+
+    private record PointKey(LocalDateTime bucket, AuditAction action) {
+    }
+}
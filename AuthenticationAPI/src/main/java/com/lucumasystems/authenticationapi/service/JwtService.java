@@ -2,31 +2,70 @@ package com.lucumasystems.authenticationapi.service;
 
 import com.lucumasystems.authenticationapi.entity.RefreshToken;
 import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.event.SessionChangedEvent;
 import com.lucumasystems.authenticationapi.orm.RefreshTokenRepository;
+import com.lucumasystems.authenticationapi.security.AuthzVersions;
+import com.lucumasystems.authenticationapi.security.PermissionIndex;
+import com.lucumasystems.authenticationapi.security.SigningKeyRing;
+import com.lucumasystems.authenticationapi.security.TokenClaims;
+import com.lucumasystems.authenticationapi.security.TokenDigests;
+import com.lucumasystems.authenticationapi.security.TokenRevocationRegistry;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
+import com.lucumasystems.authenticationapi.security.VerifiedTokenCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.security.Key;
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class JwtService {
-    @Value("${token}")
-    private String tokenSecretKey;
+    /**
+     * memory: accept tokens whose jti matches the in-memory session view without touching the database.
+     * database: check every token against the refresh_token table.
+     */
+    @Value("${jwt.validation-mode:memory}")
+    private String validationMode;
+    /**
+     * compact: fixed claim names with a permission bitmap (schema 2).
+     * legacy: details map under a claim named after the username, for nodes that cannot read schema 2 yet.
+     */
+    @Value("${jwt.claims-format:compact}")
+    private String claimsFormat;
+    @Value("${token.access-ttl:PT3H}")
+    private Duration accessTtl;
+    @Value("${token.refresh-ttl:P14D}")
+    private Duration refreshTtl;
+    private static final SecureRandom RANDOM = new SecureRandom();
     private final RefreshTokenRepository repository;
+    private final TokenRevocationRegistry revocationRegistry;
+    private final SigningKeyRing keyRing;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final AuthzVersions authzVersions;
+    private final PermissionIndex permissionIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     public String extractTokenFromHeader(String authorizationHeader) {
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
@@ -37,109 +76,243 @@ public class JwtService {
         }
     }
 
+    /**
+     * Verify the token signature once and collect everything the application reads from it.
+     * Tokens seen before are served from the verified token cache until they expire.
+     *
+     * @param token The compact JWT without the "Bearer " prefix.
+     * @return The verified token.
+     */
+    public VerifiedToken verify(String token) {
+        return verifiedTokenCache.get(token, this::parse);
+    }
+
+    private VerifiedToken parse(String token) {
+        Claims claims = extractAllClaims(token);
+        VerifiedToken.VerifiedTokenBuilder builder = VerifiedToken.builder()
+                .token(token)
+                .claims(claims)
+                .tokenId(claims.getId())
+                .expiresAt(claims.getExpiration().toInstant())
+                .userVersion(longClaim(claims, TokenClaims.USER_VERSION))
+                .rbacVersion(longClaim(claims, TokenClaims.RBAC_VERSION));
+        if (claims.containsKey(TokenClaims.SCHEMA)) {
+            Long dictionaryVersion = longClaim(claims, TokenClaims.DICTIONARY_VERSION);
+            if (dictionaryVersion != null) {
+                permissionIndex.ensureDictionary(dictionaryVersion.intValue());
+            }
+            long[] permissions = TokenClaims.decodeBitmap(claims.get(TokenClaims.PERMISSIONS, String.class));
+            return builder
+                    .userId(longClaim(claims, TokenClaims.USER_ID))
+                    .username(claims.getSubject())
+                    .roles(claims.get(TokenClaims.ROLES, List.class))
+                    .permissions(permissionIndex.permissionNames(permissions))
+                    .build();
+        }
+        // Legacy tokens store their details under a claim named after the subject
+        Map<String, Object> details = claims.get(claims.getSubject(), Map.class);
+        return builder
+                .userId(((Number) details.get("userId")).longValue())
+                .username((String) details.get("username"))
+                .roles((List<String>) details.get("role"))
+                .permissions((List<String>) details.get("permissions"))
+                .build();
+    }
+
+    private static Long longClaim(Claims claims, String name) {
+        Object value = claims.get(name);
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
     public String getUsername(String jwtToken) {
-        return extractClaim(jwtToken, claims -> {
-            Map<String, Object> adminDetails = claims.get("admin", Map.class);
-            return (String) adminDetails.get("username");
-        });
+        return verify(jwtToken).getUsername();
     }
 
     public int getUserId(String jwtToken) {
-        return extractClaim(jwtToken, claims -> {
-            Map<String, Object> adminDetails = claims.get("admin", Map.class);
-            return (int) adminDetails.get("userId");
-        });
+        return (int) verify(jwtToken).getUserId();
     }
 
     public List<String> getRoles(String jwtToken) {
-        return extractClaim(jwtToken, claims -> {
-            Map<String, Object> adminDetails = claims.get("admin", Map.class);
-            return (List<String>) adminDetails.get("role");
-        });
+        return verify(jwtToken).getRoles();
     }
 
     public List<String> getPermissions(String jwtToken) {
-        return extractClaim(jwtToken, claims -> {
-            Map<String, Object> adminDetails = claims.get("admin", Map.class);
-            return (List<String>) adminDetails.get("permissions");
-        });
-    }
-    public  <T> T extractClaim(String tokenSecretKey, Function<Claims,T> fn) {
-        final Claims claims = extractAllClaims(tokenSecretKey);
-        return fn.apply(claims);
+        return verify(jwtToken).getPermissions();
     }
 
-
-    public boolean isValidToken(String token, UserDetails applicationUser) {
-        final String username = getUsername(token);
-        RefreshToken refreshToken = repository.findByToken(token).orElse(null);
-        if (refreshToken == null) {
+    public boolean isValidToken(VerifiedToken token, UserDetails applicationUser) {
+        if (!token.getUsername().equals(applicationUser.getUsername()) || token.isExpired()) {
             return false;
         }
-        return username.equals(applicationUser.getUsername()) && !isExpired(token);
+        return isCurrentSession(token);
     }
 
-    public String refreshToken(String token, User applicationUser,LocalDateTime expiresAt) {
-        RefreshToken previousToken = repository.findTokenByUser(applicationUser).orElse(null);
-        RefreshToken refreshToken;
-        if(previousToken == null){
-            refreshToken = RefreshToken.builder()
-                    .token(token)
-                    .user(applicationUser)
-                    .expiryDate(expiresAt)
-                    .build();
-            repository.save(refreshToken);
-            return refreshToken.getToken();
+    private boolean isCurrentSession(VerifiedToken token) {
+        if (token.getTokenId() == null) {
+            // Issued before tokens carried a jti: valid while the session row migrated from it is untouched
+            return repository.existsLegacySession(token.getUserId(), TokenDigests.sha256(token.getToken()));
+        }
+        if ("memory".equals(validationMode) && revocationRegistry.isCurrent(token.getUserId(), token.getTokenId())) {
+            return true;
+        }
+        // Unknown to this node, e.g. issued elsewhere or already replaced: the database decides
+        long generation = revocationRegistry.generation();
+        boolean current = repository.existsByUserIdAndJti(token.getUserId(), token.getTokenId());
+        if (current) {
+            revocationRegistry.registerIfUnchanged(token.getUserId(), token.getTokenId(), generation);
         }
-        refreshToken = previousToken;
-        refreshToken.setToken(token);
-        refreshToken.setExpiryDate(expiresAt);
-        repository.save(refreshToken);
-        return refreshToken.getToken();
+        return current;
     }
 
-    public String generate(Map<String,Object> map, User user, Date expiry){
-        log.info("Expiry date {}",expiry);
+    /**
+     * Check a batch of tokens against their owners' current sessions, as {@link #isValidToken} does for one.
+     * Tokens the session view knows are accepted without I/O and the rest are resolved with a single query.
+     *
+     * @param tokens Verified, unexpired tokens.
+     * @return The tokens that belong to a current session.
+     */
+    public Set<VerifiedToken> currentSessions(Collection<VerifiedToken> tokens) {
+        Set<VerifiedToken> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<VerifiedToken> unresolved = new ArrayList<>();
+        for (VerifiedToken token : tokens) {
+            if (token.getTokenId() == null) {
+                // Rare and only until the last token issued before jtis expires
+                if (isCurrentSession(token)) {
+                    current.add(token);
+                }
+            } else if ("memory".equals(validationMode) && revocationRegistry.isCurrent(token.getUserId(), token.getTokenId())) {
+                current.add(token);
+            } else {
+                unresolved.add(token);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return current;
+        }
+        long generation = revocationRegistry.generation();
+        Set<Long> userIds = unresolved.stream().map(VerifiedToken::getUserId).collect(Collectors.toSet());
+        Map<Long, String> sessions = new HashMap<>();
+        for (Object[] session : repository.findCurrentSessions(userIds)) {
+            sessions.put(((Number) session[0]).longValue(), (String) session[1]);
+        }
+        for (VerifiedToken token : unresolved) {
+            if (token.getTokenId().equals(sessions.get(token.getUserId()))) {
+                current.add(token);
+                revocationRegistry.registerIfUnchanged(token.getUserId(), token.getTokenId(), generation);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Invalidate every token issued to the user.
+     *
+     * @param userId The user whose session is ended.
+     */
+    @Transactional
+    public void revokeSessions(long userId) {
+        repository.deleteByUserId(userId);
+        revocationRegistry.revoke(userId);
+        eventPublisher.publishEvent(new SessionChangedEvent(userId, null));
+    }
+
+    /**
+     * Start a new session for the user: issue an access token and a refresh token, replacing any session the
+     * user had before.
+     *
+     * @param user        The authenticated user.
+     * @param roles       Role names granted to the user.
+     * @param permissions Permission names granted through those roles.
+     * @return The access token and the refresh token.
+     */
+    public IssuedTokens generate(User user, List<String> roles, List<String> permissions){
+        String jti = UUID.randomUUID().toString();
+        String accessToken = sign(user, roles, permissions, jti);
+        String refreshToken = newRefreshToken();
+        LocalDateTime refreshExpiresAt = LocalDateTime.now().plus(refreshTtl);
+        // One statement whether or not the user already has a session row
+        repository.upsertForUser(user.getId(), TokenDigests.sha256(refreshToken), jti, refreshExpiresAt);
+        revocationRegistry.register(user.getId(), jti);
+        eventPublisher.publishEvent(new SessionChangedEvent(user.getId(), jti));
+        return new IssuedTokens(accessToken, refreshToken, refreshExpiresAt);
+    }
+
+    /**
+     * Continue a session: issue a new access token and replace its refresh token, keeping the presented one
+     * as the previous token so that a second use of it can be recognised as reuse.
+     *
+     * @param session     The session row, locked by the caller.
+     * @param user        The session's user.
+     * @param roles       Role names granted to the user.
+     * @param permissions Permission names granted through those roles.
+     * @return The access token and the refresh token.
+     */
+    public IssuedTokens rotate(RefreshToken session, User user, List<String> roles, List<String> permissions) {
+        String jti = UUID.randomUUID().toString();
+        String accessToken = sign(user, roles, permissions, jti);
+        String refreshToken = newRefreshToken();
+        LocalDateTime refreshExpiresAt = LocalDateTime.now().plus(refreshTtl);
+        session.setPreviousTokenHash(session.getTokenHash());
+        session.setTokenHash(TokenDigests.sha256(refreshToken));
+        session.setJti(jti);
+        session.setExpiryDate(refreshExpiresAt);
+        repository.save(session);
+        revocationRegistry.register(user.getId(), jti);
+        eventPublisher.publishEvent(new SessionChangedEvent(user.getId(), jti));
+        return new IssuedTokens(accessToken, refreshToken, refreshExpiresAt);
+    }
+
+    private String sign(User user, List<String> roles, List<String> permissions, String jti) {
         Date date = new Date(System.currentTimeMillis());
-        String token =  Jwts.builder()
-                .subject(user.getUsername())
-                .claim(user.getUsername(), map)
+        Date expiry = new Date(date.getTime() + accessTtl.toMillis());
+        log.info("Expiry date {}",expiry);
+        SigningKeyRing.SigningKey signingKey = keyRing.activeKey();
+        JwtBuilder builder = Jwts.builder()
+                .header().keyId(signingKey.getKeyId()).and()
+                .id(jti)
+                .subject(user.getUsername());
+        if ("legacy".equals(claimsFormat)) {
+            Map<String, Object> details = new HashMap<>();
+            details.put("username", user.getUsername());
+            details.put("role", roles);
+            details.put("permissions", permissions);
+            details.put("userId", user.getId());
+            builder.claim(user.getUsername(), details);
+        } else {
+            builder.claim(TokenClaims.SCHEMA, TokenClaims.SCHEMA_VERSION)
+                    .claim(TokenClaims.USER_ID, user.getId())
+                    .claim(TokenClaims.ROLES, roles)
+                    .claim(TokenClaims.PERMISSIONS, TokenClaims.encodeBitmap(permissionIndex.encode(permissions)))
+                    .claim(TokenClaims.DICTIONARY_VERSION, permissionIndex.dictionaryVersion());
+        }
+        return builder
+                .claim(TokenClaims.USER_VERSION, AuthzVersions.versionOf(user.getUpdatedAt()))
+                .claim(TokenClaims.RBAC_VERSION, authzVersions.rbacVersion())
                 .issuedAt(date)
                 .expiration(expiry)
-                .signWith(getSecretKey())
+                .signWith(signingKey.getKey())
                 .compact();
-        return refreshToken(token,user,LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
-    }
-
-    public static Date getDate(int value, char unit) {
-        LocalDateTime currentDateTime = LocalDateTime.now();
-        switch (unit){
-            case 'H'-> currentDateTime = currentDateTime.plusHours(value);
-            case 'M'-> currentDateTime = currentDateTime.plusMinutes(value);
-            case 'S'-> currentDateTime = currentDateTime.plusSeconds(value);
-            case 'D'-> currentDateTime = currentDateTime.plusDays(value);
-            case 'Y'-> currentDateTime = currentDateTime.plusYears(value);
-            default -> throw new IllegalArgumentException("Invalid parameters");
-        }
-        log.info("Created date => {}",currentDateTime);
-        return Date.from(currentDateTime.atZone(ZoneId.systemDefault()).toInstant());
     }
 
-    public boolean isExpired(String tokenSecretKey){
-        return extractClaim(tokenSecretKey,Claims::getExpiration).before(new Date(System.currentTimeMillis()));
+    private static String newRefreshToken() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
+
+    /**
+     * @param accessToken      The signed JWT.
+     * @param refreshToken     The opaque token that renews the session at {@code /auth/refresh}.
+     * @param refreshExpiresAt When the session ends unless it is refreshed.
+     */
+    public record IssuedTokens(String accessToken, String refreshToken, LocalDateTime refreshExpiresAt) {
+    }
+
     public Claims extractAllClaims(String token){
-        return Jwts
-                .parser()
-                .setSigningKey(getSecretKey())
-                .build()
+        return keyRing.parser()
                 .parseSignedClaims(token)
                 .getPayload();
     }
-    private Key getSecretKey(){
-        byte[] keyBytes = Decoders.BASE64.decode(tokenSecretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
 
 
 
@@ -0,0 +1,116 @@
+package com.lucumasystems.authenticationapi.service;
+
+import com.lucumasystems.authenticationapi.dto.JwtResponse;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
+import com.lucumasystems.authenticationapi.entity.Permission;
+import com.lucumasystems.authenticationapi.entity.RefreshToken;
+import com.lucumasystems.authenticationapi.entity.Role;
+import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.error.InvalidRefreshTokenException;
+import com.lucumasystems.authenticationapi.orm.RefreshTokenRepository;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import com.lucumasystems.authenticationapi.security.TokenDigests;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+@Slf4j
+public class LoginService {
+
+    private final JwtService jwtService;
+    private final AuditLogService auditLogService;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Issue a token to a user the authentication manager has just verified, recording the session and the
+     * audit entry in a single transaction.
+     * <p>
+     * The user must be the authenticated principal, loaded with its roles and permissions, so no further
+     * queries are needed to build the token: the whole step is the token upsert and the audit insert.
+     * Password verification stays outside this transaction so no connection is held while hashing.
+     *
+     * @param user The authenticated principal.
+     * @return The access and refresh tokens with the roles and permissions they grant.
+     */
+    @Transactional
+    public JwtResponse completeLogin(User user) {
+        List<String> roles = roleNames(user);
+        List<String> permissions = permissionNames(user);
+        JwtService.IssuedTokens tokens = jwtService.generate(user, roles, permissions);
+        auditLogService.logAction(user.getId(), user.getUsername(), AuditAction.LOGIN);
+        return response(tokens, roles, permissions);
+    }
+
+    /**
+     * Exchange a refresh token for a new access token and a new refresh token, without a password check.
+     * <p>
+     * The session row is locked for the exchange, so two requests with the same token cannot both succeed.
+     * A token that was already exchanged ends the session: either the client or someone who copied the token
+     * is replaying it, and neither can be told apart from the other. The revocation is kept when the
+     * exception is thrown.
+     *
+     * @param refreshToken The refresh token issued at login or at the last refresh.
+     * @return The new tokens with the roles and permissions they grant.
+     * @throws InvalidRefreshTokenException if the token cannot be exchanged.
+     */
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public JwtResponse refresh(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            throw new InvalidRefreshTokenException("Invalid refresh token");
+        }
+        byte[] tokenHash = TokenDigests.sha256(refreshToken);
+        RefreshToken session = refreshTokenRepository.findByTokenHashForUpdate(tokenHash).orElse(null);
+        if (session == null) {
+            refreshTokenRepository.findByPreviousTokenHash(tokenHash).ifPresent(reused -> {
+                log.warn("Refresh token reused for user {}, ending the session", reused.getUser().getUsername());
+                jwtService.revokeSessions(reused.getUser().getId());
+                auditLogService.logAction(reused.getUser().getId(), reused.getUser().getUsername(), AuditAction.REFRESH_TOKEN_REUSE);
+            });
+            throw new InvalidRefreshTokenException("Invalid refresh token");
+        }
+        long userId = session.getUser().getId();
+        if (session.getExpiryDate().isBefore(LocalDateTime.now())) {
+            jwtService.revokeSessions(userId);
+            throw new InvalidRefreshTokenException("Refresh token expired");
+        }
+        User user = userRepository.findActiveUserWithPermissionsById(userId).orElse(null);
+        if (user == null || !user.isAccountNonLocked() || !user.isAccountNonExpired() || !user.isCredentialsNonExpired()) {
+            jwtService.revokeSessions(userId);
+            throw new InvalidRefreshTokenException("Invalid refresh token");
+        }
+        List<String> roles = roleNames(user);
+        List<String> permissions = permissionNames(user);
+        JwtService.IssuedTokens tokens = jwtService.rotate(session, user, roles, permissions);
+        return response(tokens, roles, permissions);
+    }
+
+    private static List<String> roleNames(User user) {
+        return user.getRoles().stream().map(Role::getName).toList();
+    }
+
+    private static List<String> permissionNames(User user) {
+        return user.getRoles().stream()
+                .flatMap(role -> role.getPermissions().stream())
+                .map(Permission::getName)
+                .distinct()
+                .toList();
+    }
+
+    private static JwtResponse response(JwtService.IssuedTokens tokens, List<String> roles, List<String> permissions) {
+        return JwtResponse.builder()
+                .permissions(permissions)
+                .roles(roles)
+                .token(tokens.accessToken())
+                .refreshToken(tokens.refreshToken())
+                .refreshTokenExpiresAt(tokens.refreshExpiresAt())
+                .build();
+    }
+}
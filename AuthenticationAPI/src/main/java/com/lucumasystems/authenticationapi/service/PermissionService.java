@@ -4,13 +4,16 @@ import com.lucumasystems.authenticationapi.dto.PermissionOutDto;
 import com.lucumasystems.authenticationapi.dto.PermissionsDTO;
 import com.lucumasystems.authenticationapi.entity.Permission;
 import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.event.PermissionChangedEvent;
 import com.lucumasystems.authenticationapi.error.PermissionAlreadyExistsException;
 import com.lucumasystems.authenticationapi.error.PermissionNotFoundException;
 import com.lucumasystems.authenticationapi.orm.PermissionRepository;
 import com.lucumasystems.authenticationapi.orm.UserRepository;
+import com.lucumasystems.authenticationapi.security.AuthzVersions;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -26,6 +29,8 @@ public class PermissionService {
 
     private final PermissionRepository permissionRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AuthzVersions authzVersions;
 
     @Transactional
     public PermissionOutDto addPermission(PermissionsDTO permissionsDTO, int createdBy) {
@@ -45,6 +50,7 @@ public class PermissionService {
                 .createdBy(optionalUser.get())
                 .build();
         permission=  permissionRepository.save(permission);
+        eventPublisher.publishEvent(new PermissionChangedEvent(permission.getId(), authzVersions.nextRbacVersion()));
         PermissionOutDto permissionOutDto = new PermissionOutDto();
         permissionOutDto.setPermission(permission.getName());
         permissionOutDto.setDescription(permission.getDescription());
@@ -70,12 +76,15 @@ public class PermissionService {
         Permission permission = optionalPermission.get();
         permission.setActive(!permission.isActive());
         permission.setUpdatedBy(optionalUser.get());
-        return parse(permissionRepository.save(permission));
+        Permission saved = permissionRepository.save(permission);
+        eventPublisher.publishEvent(new PermissionChangedEvent(saved.getId(), authzVersions.nextRbacVersion()));
+        return parse(saved);
     }
     public Page<Permission> findPermissionsFromPermissionsIdOrPermissionsNames(int offset, int limit, List<Integer> permissionIds, List<String> permissionsNames) {
         Pageable pageable = PageRequest.of(offset, limit);
         return permissionRepository.findPermissionsFromPermissionsIdOrPermissionsNames(pageable, permissionIds, permissionsNames);
     }
+    @Transactional
     public PermissionOutDto updatePermission(int permissionId, PermissionsDTO permissionsDTO, int updatedBy) {
         Optional<User> optionalUser =  userRepository.findActiveUserById(updatedBy);
         if(optionalUser.isEmpty()) {
@@ -92,6 +101,7 @@ public class PermissionService {
             }
             permission.setUpdatedBy(optionalUser.get());
             Permission permission1 = permissionRepository.save(permission);
+            eventPublisher.publishEvent(new PermissionChangedEvent(permission1.getId(), authzVersions.nextRbacVersion()));
             PermissionOutDto permissionOutDto = new PermissionOutDto();
             permissionOutDto.setPermission(permission1.getName());
             permissionOutDto.setDescription(permission1.getDescription());
@@ -0,0 +1,63 @@
+package com.lucumasystems.authenticationapi.service;
+
+import com.lucumasystems.authenticationapi.orm.RefreshTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes sessions whose refresh token has expired.
+ * <p>
+ * Rows go in chunks of {@code refresh-token.purge.batch-size}, each chunk in its own short transaction, so a
+ * large backlog never holds locks for long and never blocks a concurrent refresh. A run stops after
+ * {@code refresh-token.purge.max-batches} chunks and the next run carries on.
+ */
+@Component
+@Slf4j
+public class RefreshTokenPurgeJob {
+
+    private final RefreshTokenRepository repository;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter purged;
+    private final Timer duration;
+
+    public RefreshTokenPurgeJob(RefreshTokenRepository repository,
+                                @Value("${refresh-token.purge.batch-size:1000}") int batchSize,
+                                @Value("${refresh-token.purge.max-batches:100}") int maxBatches,
+                                MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.purged = Counter.builder("refresh_token.purge.deleted").register(meterRegistry);
+        this.duration = Timer.builder("refresh_token.purge.duration").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${refresh-token.purge.interval:PT15M}", initialDelayString = "${refresh-token.purge.initial-delay:PT1M}")
+    public int purgeExpired() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int deleted = repository.deleteExpired(now, batchSize);
+            total += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        duration.record(elapsed, TimeUnit.NANOSECONDS);
+        purged.increment(total);
+        if (total > 0) {
+            log.info("Purged {} expired refresh tokens in {} ms", total, elapsed / 1_000_000);
+        }
+        return total;
+    }
+}
@@ -5,13 +5,16 @@ import com.lucumasystems.authenticationapi.dto.UserOutDto;
 import com.lucumasystems.authenticationapi.entity.Permission;
 import com.lucumasystems.authenticationapi.entity.Role;
 import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.event.RoleChangedEvent;
 import com.lucumasystems.authenticationapi.orm.PermissionRepository;
 import com.lucumasystems.authenticationapi.orm.RoleRepository;
 import com.lucumasystems.authenticationapi.orm.UserRepository;
+import com.lucumasystems.authenticationapi.security.AuthzVersions;
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -27,6 +30,8 @@ public class RoleService {
     private final RoleRepository roleRepository;
     private final UserRepository userRepository;
     private final PermissionRepository permissionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AuthzVersions authzVersions;
 
     @Transactional
     public void addRole(RoleDto role, int createdBy) {
@@ -58,6 +63,7 @@ public class RoleService {
                 .build();
 
         roleRepository.save(toSave);
+        eventPublisher.publishEvent(new RoleChangedEvent(toSave.getName(), authzVersions.nextRbacVersion()));
     }
 
     @Transactional
@@ -93,7 +99,9 @@ public class RoleService {
         r.setUpdatedBy(optionalUser.get());
 
         roleRepository.save(r);
+        eventPublisher.publishEvent(new RoleChangedEvent(r.getName(), authzVersions.nextRbacVersion()));
     }
+    @Transactional
     public void changeRoleStatus(String name, int updatedBy) {
         Optional<User> optionalUser =  userRepository.findActiveUserById(updatedBy);
         if(optionalUser.isEmpty()) {
@@ -107,6 +115,7 @@ public class RoleService {
         role.setActive(!role.isActive());
         role.setUpdatedBy(optionalUser.get());
         roleRepository.save(role);
+        eventPublisher.publishEvent(new RoleChangedEvent(role.getName(), authzVersions.nextRbacVersion()));
     }
 
     public  Page<UserOutDto>  findUsersWithRoles(List<String> roleName, int offset, int limit) {
@@ -0,0 +1,99 @@
+package com.lucumasystems.authenticationapi.service;
+
+import com.lucumasystems.authenticationapi.event.InvalidationResyncEvent;
+import com.lucumasystems.authenticationapi.event.SigningKeysChangedEvent;
+import com.lucumasystems.authenticationapi.security.SigningKeyRing;
+import com.lucumasystems.authenticationapi.security.VerifiedTokenCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rotates and retires signing keys for the whole cluster.
+ * <p>
+ * Changes are stored in the signing_key table and announced through the invalidation bus in the same
+ * transaction; every node, this one included, then reloads its {@link SigningKeyRing} from the table. The ring is
+ * also loaded at startup and after the bus reconnects, so a rotation survives restarts and missed notifications.
+ * The table holds HMAC secrets in plain text, so access to it must be restricted like access to the
+ * {@code token} property.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class SigningKeyService {
+
+    private final SigningKeyRing signingKeyRing;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    /**
+     * Add a key and make it the signing key on every node; previous keys stay valid until they are retired.
+     *
+     * @param keyId     The identifier stamped into the {@code kid} header.
+     * @param secretKey The Base64 encoded HMAC secret.
+     * @throws IllegalArgumentException If the key is invalid or tokens are signed with an asymmetric algorithm.
+     */
+    @Transactional
+    public void rotate(String keyId, String secretKey) {
+        signingKeyRing.checkRotation(keyId, secretKey);
+        jdbcTemplate.update("INSERT INTO signing_key (key_id, secret, retired, changed_at) VALUES (?, ?, false, clock_timestamp()) " +
+                "ON CONFLICT (key_id) DO UPDATE SET secret = EXCLUDED.secret, retired = false, changed_at = EXCLUDED.changed_at",
+                keyId, secretKey);
+        eventPublisher.publishEvent(new SigningKeysChangedEvent());
+        log.info("Signing key {} rotated in", keyId);
+    }
+
+    /**
+     * Stop accepting tokens signed with the given key on every node.
+     *
+     * @param keyId The key to remove; the active key cannot be retired.
+     * @throws IllegalArgumentException If the key is unknown or active.
+     */
+    @Transactional
+    public void retire(String keyId) {
+        signingKeyRing.checkRetirement(keyId);
+        // The secret is removed; the row stays so that a key from configuration remains retired after a restart
+        jdbcTemplate.update("INSERT INTO signing_key (key_id, secret, retired, changed_at) VALUES (?, NULL, true, clock_timestamp()) " +
+                "ON CONFLICT (key_id) DO UPDATE SET secret = NULL, retired = true, changed_at = EXCLUDED.changed_at",
+                keyId);
+        eventPublisher.publishEvent(new SigningKeysChangedEvent());
+        log.info("Signing key {} retired", keyId);
+    }
+
+    public Set<String> keyIds() {
+        return signingKeyRing.keyIds();
+    }
+
+    @PostConstruct
+    @EventListener(InvalidationResyncEvent.class)
+    public void reload() {
+        List<SigningKeyRing.StoredKey> stored = jdbcTemplate.query(
+                "SELECT key_id, secret, retired FROM signing_key ORDER BY changed_at, key_id",
+                (row, rowNum) -> new SigningKeyRing.StoredKey(row.getString("key_id"), row.getString("secret"), row.getBoolean("retired")));
+        Set<String> before = signingKeyRing.keyIds();
+        signingKeyRing.load(stored);
+        if (!signingKeyRing.keyIds().containsAll(before)) {
+            // Tokens signed with a retired key may still be cached as verified
+            verifiedTokenCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Applied after the commit for changes made here, and at once for changes received from other nodes.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSigningKeysChanged(SigningKeysChangedEvent event) {
+        reload();
+    }
+}
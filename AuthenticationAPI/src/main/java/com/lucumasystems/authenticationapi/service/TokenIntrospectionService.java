@@ -0,0 +1,131 @@
+package com.lucumasystems.authenticationapi.service;
+
+import com.lucumasystems.authenticationapi.dto.TokenIntrospection;
+import com.lucumasystems.authenticationapi.security.AuthPrincipal;
+import com.lucumasystems.authenticationapi.security.PrincipalCache;
+import com.lucumasystems.authenticationapi.security.VerifiedToken;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class TokenIntrospectionService {
+
+    private final JwtService jwtService;
+    private final PrincipalCache principalCache;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Signatures are verified on a fixed pool of {@code introspection.verify-threads} threads (the CPU count when 0)
+     * rather than on the common fork-join pool. Work that does not fit its queue runs on the request thread, so a
+     * burst of batches slows down instead of piling up.
+     */
+    public TokenIntrospectionService(JwtService jwtService, PrincipalCache principalCache,
+                                     @Value("${introspection.verify-threads:0}") int threads,
+                                     @Value("${introspection.verify-queue-capacity:64}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.jwtService = jwtService;
+        this.principalCache = principalCache;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "token-introspection-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Introspect a batch of tokens.
+     * <p>
+     * Signatures are verified in parallel, then the owners of all unexpired tokens are resolved together from
+     * the principal cache with one query for the misses, and the tokens are checked against their owners' current
+     * sessions with at most one more query. A token that cannot be verified is reported inactive without failing
+     * the batch.
+     *
+     * @param tokens Compact JWTs without the "Bearer " prefix.
+     * @return One result per token, in the order given.
+     */
+    public List<TokenIntrospection> introspect(List<String> tokens) {
+        List<VerifiedToken> verified = verifyAll(tokens);
+        List<VerifiedToken> live = verified.stream()
+                .filter(Objects::nonNull)
+                .filter(token -> !token.isExpired())
+                .toList();
+        Map<String, AuthPrincipal> principals = principalCache.getAll(
+                live.stream().map(VerifiedToken::getUsername).collect(Collectors.toSet()));
+        Set<VerifiedToken> current = jwtService.currentSessions(live.stream()
+                .filter(token -> isUsable(principals.get(token.getUsername())))
+                .toList());
+        return verified.stream().map(token -> current.contains(token) ? describe(token) : TokenIntrospection.INACTIVE).toList();
+    }
+
+    private List<VerifiedToken> verifyAll(List<String> tokens) {
+        // One slice per pool thread rather than one task per token
+        int slices = Math.min(tokens.size(), executor.getMaximumPoolSize());
+        int sliceSize = (tokens.size() + slices - 1) / slices;
+        List<CompletableFuture<List<VerifiedToken>>> futures = new ArrayList<>(slices);
+        for (int from = 0; from < tokens.size(); from += sliceSize) {
+            List<String> slice = tokens.subList(from, Math.min(from + sliceSize, tokens.size()));
+            futures.add(CompletableFuture.supplyAsync(() -> slice.stream().map(this::verifyQuietly).toList(), executor));
+        }
+        List<VerifiedToken> verified = new ArrayList<>(tokens.size());
+        for (CompletableFuture<List<VerifiedToken>> future : futures) {
+            verified.addAll(future.join());
+        }
+        return verified;
+    }
+
+    private VerifiedToken verifyQuietly(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            return jwtService.verify(token);
+        } catch (RuntimeException e) {
+            log.debug("Token failed verification: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isUsable(AuthPrincipal principal) {
+        return principal != null && principal.isEnabled() && principal.isAccountNonLocked()
+                && principal.isCredentialsNonExpired();
+    }
+
+    private static TokenIntrospection describe(VerifiedToken token) {
+        return TokenIntrospection.builder()
+                .active(true)
+                .sub(token.getUsername())
+                .username(token.getUsername())
+                .userId(token.getUserId())
+                .tokenType("Bearer")
+                .exp(token.getExpiresAt().getEpochSecond())
+                .iat(token.getClaims().getIssuedAt() == null ? null : token.getClaims().getIssuedAt().toInstant().getEpochSecond())
+                .jti(token.getTokenId())
+                .roles(token.getRoles())
+                .permissions(token.getPermissions())
+                .build();
+    }
+}
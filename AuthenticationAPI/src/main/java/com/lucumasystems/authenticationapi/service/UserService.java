@@ -5,36 +5,44 @@ import com.lucumasystems.authenticationapi.dto.UserDTO;
 import com.lucumasystems.authenticationapi.entity.Permission;
 import com.lucumasystems.authenticationapi.entity.Role;
 import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.event.UserChangedEvent;
 import com.lucumasystems.authenticationapi.orm.PermissionRepository;
 import com.lucumasystems.authenticationapi.orm.RoleRepository;
 import com.lucumasystems.authenticationapi.orm.UserRepository;
+import com.lucumasystems.authenticationapi.security.AuthzVersions;
 import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.*;
 
 @Service
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 @Slf4j
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final RoleRepository roleRepository;
     private final PermissionService permissionService;
+    private final JwtService jwtService;
+    private final ApplicationEventPublisher eventPublisher;
 
+    @Transactional
     public User addUser(UserDTO userDTO, long createdBy) {
         User creator = null;
         Optional<User> alreadyExistingUser = userRepository.findActiveUserByUsername(userDTO.getUsername());
@@ -76,12 +84,14 @@ public class UserService implements UserDetailsService {
         return toSave;
     }
 
+    @Transactional
     public User updateUser(UserDTO userDTO, long updatedBy, String username) {
         User existingUser = userRepository.findActiveUserByUsername(username)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
 
         User updater = userRepository.findById(updatedBy)
                 .orElseThrow(() -> new EntityNotFoundException("Updater not found"));
+        String previousUsername = existingUser.getUsername();
 
         if (userDTO.getUsername() != null) {
             existingUser.setUsername(userDTO.getUsername());
@@ -97,9 +107,13 @@ public class UserService implements UserDetailsService {
         }
 
         existingUser.setUpdatedBy(updater);
-        return userRepository.save(existingUser);
+        // Flushed so that @PreUpdate has stamped updatedAt, the version the event carries, before commit
+        User saved = userRepository.saveAndFlush(existingUser);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId(), previousUsername, AuthzVersions.versionOf(saved.getUpdatedAt())));
+        return saved;
     }
 
+    @Transactional
     public void deactivateUser(Long userId, long updatedBy) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
@@ -109,9 +123,12 @@ public class UserService implements UserDetailsService {
 
         user.setEnabled(false);
         user.setUpdatedBy(updater);
-        userRepository.save(user);
+        User saved = userRepository.saveAndFlush(user);
+        jwtService.revokeSessions(userId);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId(), saved.getUsername(), AuthzVersions.versionOf(saved.getUpdatedAt())));
     }
 
+    @Transactional
     public void activateUser(Long userId, long updatedBy) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
@@ -121,9 +138,45 @@ public class UserService implements UserDetailsService {
 
         user.setEnabled(true);
         user.setUpdatedBy(updater);
-        userRepository.save(user);
+        User saved = userRepository.saveAndFlush(user);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId(), saved.getUsername(), AuthzVersions.versionOf(saved.getUpdatedAt())));
     }
 
+    /**
+     * Lock an account after repeated failed logins. Unknown or already locked usernames are ignored.
+     *
+     * @return Whether an account was locked.
+     */
+    @Transactional
+    public boolean lockAccount(String username) {
+        Optional<User> user = userRepository.findActiveUserByUsername(username).filter(User::isAccountNonLocked);
+        if (user.isEmpty()) {
+            return false;
+        }
+        user.get().setAccountNonLocked(false);
+        User saved = userRepository.saveAndFlush(user.get());
+        jwtService.revokeSessions(saved.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId(), saved.getUsername(), AuthzVersions.versionOf(saved.getUpdatedAt())));
+        log.warn("Account {} locked after repeated failed logins", username);
+        return true;
+    }
+
+    @Transactional
+    public User unlockAccount(Long userId, long updatedBy) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new EntityNotFoundException("User not found"));
+
+        User updater = userRepository.findById(updatedBy)
+                .orElseThrow(() -> new EntityNotFoundException("Updater not found"));
+
+        user.setAccountNonLocked(true);
+        user.setUpdatedBy(updater);
+        User saved = userRepository.saveAndFlush(user);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId(), saved.getUsername(), AuthzVersions.versionOf(saved.getUpdatedAt())));
+        return saved;
+    }
+
+    @Transactional
     public User assignRolesToUser(Long userId, List<String> roleNames, long updatedBy) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
@@ -133,9 +186,14 @@ public class UserService implements UserDetailsService {
         List<Role> roles = roleRepository.findAllByNameIn(roleNames);
         user.getRoles().addAll(roles);
         user.setUpdatedBy(updater);
-        return userRepository.save(user);
+        // Collection changes alone do not fire @PreUpdate; the user version must still move
+        user.setUpdatedAt(LocalDateTime.now());
+        User saved = userRepository.saveAndFlush(user);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId(), saved.getUsername(), AuthzVersions.versionOf(saved.getUpdatedAt())));
+        return saved;
     }
 
+    @Transactional
     public User removeRolesFromUser(Long userId, List<String> roleNames, long updatedBy) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
@@ -145,10 +203,14 @@ public class UserService implements UserDetailsService {
 
         user.getRoles().removeIf(role -> roleNames.contains(role.getName()));
         user.setUpdatedBy(updater);
+        user.setUpdatedAt(LocalDateTime.now());
 
-        return userRepository.save(user);
+        User saved = userRepository.saveAndFlush(user);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId(), saved.getUsername(), AuthzVersions.versionOf(saved.getUpdatedAt())));
+        return saved;
     }
 
+    @Transactional
     public User resetPassword(String username, String newPassword, long updatedBy) {
         User user = userRepository.findActiveUserByUsername(username)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
@@ -159,13 +221,29 @@ public class UserService implements UserDetailsService {
         user.setPassword(passwordEncoder.encode(newPassword));
         user.setUpdatedBy(updater);
 
-        return userRepository.save(user);
+        User saved = userRepository.saveAndFlush(user);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId(), saved.getUsername(), AuthzVersions.versionOf(saved.getUpdatedAt())));
+        return saved;
     }
 
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return userRepository.findActiveUserByUsername(username).orElseThrow(()-> new UsernameNotFoundException("User not found"));
+        return userRepository.findActiveUserWithPermissionsByUsername(username).orElseThrow(()-> new UsernameNotFoundException("User not found"));
+    }
+
+    /**
+     * Store a password rehashed after a successful login because its algorithm or cost is not the current one.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        log.info("Password hash of {} upgraded", user.getUsername());
+        if (user instanceof User entity) {
+            entity.setPassword(newPassword);
+        }
+        return user;
     }
 
 
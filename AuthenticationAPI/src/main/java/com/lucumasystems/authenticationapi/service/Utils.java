@@ -1,15 +1,38 @@
 package com.lucumasystems.authenticationapi.service;
 
+import com.lucumasystems.authenticationapi.security.AdmissionControlledPasswordEncoder;
+import com.lucumasystems.authenticationapi.security.CalibratedBCryptPasswordEncoder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
+import java.util.Map;
+
 @Configuration
 public class Utils {
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${password-hashing.threads:0}") int threads,
+                                           @Value("${password-hashing.queue-capacity:64}") int queueCapacity,
+                                           @Value("${password-hashing.max-wait:PT5S}") Duration maxWait,
+                                           @Value("${password-hashing.retry-after:PT2S}") Duration retryAfter,
+                                           @Value("${password-hashing.bcrypt-strength:0}") int bcryptStrength,
+                                           @Value("${password-hashing.target-latency:PT0.25S}") Duration targetLatency,
+                                           MeterRegistry meterRegistry) {
+        CalibratedBCryptPasswordEncoder bcrypt = bcryptStrength > 0
+                ? new CalibratedBCryptPasswordEncoder(bcryptStrength)
+                : CalibratedBCryptPasswordEncoder.calibrate(targetLatency);
+        Gauge.builder("password.hash.bcrypt.strength", bcrypt, CalibratedBCryptPasswordEncoder::getStrength).register(meterRegistry);
+        // New hashes are stored as {bcrypt}$2a$NN$..., recording algorithm and cost; hashes stored before the
+        // prefix was introduced are plain BCrypt and are rewritten with it on the next login
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return new AdmissionControlledPasswordEncoder(delegating, threads, queueCapacity, maxWait, retryAfter, meterRegistry);
     }
 
 }
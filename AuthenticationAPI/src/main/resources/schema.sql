@@ -0,0 +1,177 @@
+-- Runs on every start before Hibernate updates the schema, so every block must be idempotent.
+-- The whole file is sent as one statement (see spring.sql.init.separator) so that DO blocks keep their semicolons.
+
+-- Refresh tokens are stored as SHA-256 digests: hash the stored tokens in place and drop the text columns.
+-- Dropping token also drops its unique index, so the index on token_hash is created here rather than left to
+-- Hibernate. Hashed previous tokens still take part in reuse detection: presenting one again is matched on
+-- previous_token_hash and ends the session, as it did before the migration.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'refresh_token' AND column_name = 'token') THEN
+        ALTER TABLE refresh_token ADD COLUMN IF NOT EXISTS token_hash bytea;
+        UPDATE refresh_token SET token_hash = sha256(convert_to(token, 'UTF8'));
+        ALTER TABLE refresh_token ALTER COLUMN token_hash SET NOT NULL;
+        ALTER TABLE refresh_token DROP COLUMN token;
+        CREATE UNIQUE INDEX IF NOT EXISTS uk_refresh_token_token_hash ON refresh_token (token_hash);
+    END IF;
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'refresh_token' AND column_name = 'previous_token') THEN
+        ALTER TABLE refresh_token ADD COLUMN IF NOT EXISTS previous_token_hash bytea;
+        UPDATE refresh_token SET previous_token_hash = sha256(convert_to(previous_token, 'UTF8'))
+        WHERE previous_token IS NOT NULL;
+        ALTER TABLE refresh_token DROP COLUMN previous_token;
+        CREATE INDEX IF NOT EXISTS idx_refresh_token_previous_token_hash ON refresh_token (previous_token_hash);
+    END IF;
+END $$;
+
+-- One session per user: upsertForUser relies on ON CONFLICT (user_id), so the unique index must exist even where the
+-- table predates it. Duplicate rows left from before are removed first, keeping the newest session of each user.
+DO $$
+BEGIN
+    IF to_regclass('refresh_token') IS NULL THEN
+        RETURN;
+    END IF;
+    IF EXISTS (SELECT 1 FROM pg_index i JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+               WHERE i.indrelid = 'refresh_token'::regclass AND i.indisunique AND i.indnatts = 1 AND a.attname = 'user_id') THEN
+        RETURN;
+    END IF;
+    DELETE FROM refresh_token WHERE id IN (
+        SELECT id FROM (
+            SELECT id, row_number() OVER (PARTITION BY user_id ORDER BY expiry_date DESC, id DESC) AS position
+            FROM refresh_token WHERE user_id IS NOT NULL
+        ) ranked WHERE position > 1);
+    CREATE UNIQUE INDEX uk_refresh_token_user_id ON refresh_token (user_id);
+END $$;
+
+-- Audit actions are stored as smallint codes; these must match the codes of AuditAction.
+-- Session-local, so it only exists while the migrations below run.
+CREATE OR REPLACE FUNCTION pg_temp.audit_action_code(name text) RETURNS smallint LANGUAGE sql IMMUTABLE AS $$
+    SELECT (CASE name
+        WHEN 'LOGIN' THEN 1 WHEN 'LOGOUT' THEN 2 WHEN 'FAILED_ATTEMPT' THEN 3 WHEN 'ACCOUNT_LOCKED' THEN 4
+        WHEN 'REFRESH_TOKEN_REUSE' THEN 5 WHEN 'SELF_REGISTER' THEN 6 WHEN 'REGISTER' THEN 7 WHEN 'UPDATE' THEN 8
+        WHEN 'RESET_PASSWORD' THEN 9 WHEN 'DEACTIVATE_USER' THEN 10 WHEN 'ACTIVATE_USER' THEN 11
+        WHEN 'UNLOCK_USER' THEN 12 WHEN 'ADD_ROLE' THEN 13 WHEN 'ADD_PERMISSIONS_TO_ROLE' THEN 14
+        WHEN 'CHANGE_ROLE_STATUS' THEN 15 WHEN 'ADD_PERMISSION' THEN 16 WHEN 'CHANGE_PERMISSION_STATUS' THEN 17
+        WHEN 'UPDATE_PERMISSION' THEN 18 WHEN 'ROTATE_SIGNING_KEY' THEN 19 WHEN 'RETIRE_SIGNING_KEY' THEN 20
+        WHEN 'EXPORT_AUDIT_LOGS' THEN 21 WHEN 'DELETE_AUDIT_LOGS' THEN 22
+        ELSE 0 END)::smallint
+$$;
+
+-- audit_log is partitioned by month on timestamp; an existing plain table is copied into the partitioned one.
+-- Later months are created ahead of time by AuditPartitionMaintainer.
+DO $$
+DECLARE
+    month timestamp;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid
+               WHERE c.relname = 'audit_log' AND c.relnamespace = current_schema()::regnamespace) THEN
+        RETURN;
+    END IF;
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'audit_log' AND relkind = 'r'
+               AND relnamespace = current_schema()::regnamespace) THEN
+        ALTER TABLE audit_log RENAME TO audit_log_unpartitioned;
+    END IF;
+    CREATE TABLE audit_log (
+        id bigint GENERATED BY DEFAULT AS IDENTITY,
+        user_id bigint,
+        action smallint NOT NULL,
+        detail jsonb,
+        timestamp timestamp(6) NOT NULL,
+        PRIMARY KEY (id, timestamp)
+    ) PARTITION BY RANGE (timestamp);
+    CREATE TABLE audit_log_default PARTITION OF audit_log DEFAULT;
+    FOR month IN SELECT generate_series(date_trunc('month', localtimestamp), date_trunc('month', localtimestamp) + interval '3 months', interval '1 month') LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF audit_log FOR VALUES FROM (%L) TO (%L)',
+                       'audit_log_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+    END LOOP;
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'audit_log_unpartitioned'
+               AND relnamespace = current_schema()::regnamespace) THEN
+        FOR month IN SELECT DISTINCT date_trunc('month', timestamp) FROM audit_log_unpartitioned WHERE timestamp IS NOT NULL LOOP
+            EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF audit_log FOR VALUES FROM (%L) TO (%L)',
+                           'audit_log_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+        END LOOP;
+        INSERT INTO audit_log (id, user_id, action, detail, timestamp)
+        SELECT l.id, u.id, pg_temp.audit_action_code(l.action),
+               CASE WHEN u.id IS NULL AND l.username IS NOT NULL THEN jsonb_build_object('user', l.username) END,
+               COALESCE(l.timestamp, TIMESTAMP '1970-01-01')
+        FROM audit_log_unpartitioned l LEFT JOIN user_details u ON u.username = l.username;
+        PERFORM setval(pg_get_serial_sequence('audit_log', 'id'), COALESCE((SELECT max(id) FROM audit_log), 0) + 1, false);
+        DROP TABLE audit_log_unpartitioned;
+    END IF;
+END $$;
+
+-- A partitioned audit_log still holding usernames and action names is converted in place: usernames become user
+-- ids (a name matching no user is kept in detail) and actions become codes. The rows are rewritten once; run
+-- VACUUM FULL audit_log afterwards (or wait for the partitions to age out) to give the space back.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = current_schema() AND table_name = 'audit_log' AND column_name = 'username') THEN
+        RETURN;
+    END IF;
+    ALTER TABLE audit_log ADD COLUMN IF NOT EXISTS user_id bigint,
+                          ADD COLUMN IF NOT EXISTS detail jsonb,
+                          ADD COLUMN IF NOT EXISTS action_code smallint;
+    UPDATE audit_log a SET user_id = (SELECT u.id FROM user_details u WHERE u.username = a.username),
+                           action_code = pg_temp.audit_action_code(a.action);
+    UPDATE audit_log SET detail = jsonb_build_object('user', username) WHERE user_id IS NULL AND username IS NOT NULL;
+    -- Dropping the columns also drops the indexes on them
+    ALTER TABLE audit_log DROP COLUMN username, DROP COLUMN action;
+    ALTER TABLE audit_log RENAME COLUMN action_code TO action;
+    ALTER TABLE audit_log ALTER COLUMN action SET NOT NULL;
+END $$;
+
+-- Per-minute action counts maintained by AuditRollupService, keyed like audit_log on the action code and the user
+-- id; user_id is 0 for the all-users total
+CREATE TABLE IF NOT EXISTS audit_rollup (
+    bucket timestamp(0) NOT NULL,
+    action smallint NOT NULL,
+    user_id bigint NOT NULL DEFAULT 0,
+    count bigint NOT NULL,
+    PRIMARY KEY (bucket, action, user_id)
+);
+
+-- A rollup table still keyed on names is converted in place; per-user counts of names matching no user are dropped
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = current_schema() AND table_name = 'audit_rollup' AND column_name = 'username') THEN
+        RETURN;
+    END IF;
+    ALTER TABLE audit_rollup ADD COLUMN IF NOT EXISTS user_id bigint,
+                             ADD COLUMN IF NOT EXISTS action_code smallint;
+    UPDATE audit_rollup r SET user_id = CASE WHEN r.username = '' THEN 0
+                                             ELSE (SELECT u.id FROM user_details u WHERE u.username = r.username) END,
+                              action_code = pg_temp.audit_action_code(r.action);
+    DELETE FROM audit_rollup WHERE user_id IS NULL;
+    -- Dropping the columns also drops the primary key and the index on them
+    ALTER TABLE audit_rollup DROP COLUMN username, DROP COLUMN action;
+    ALTER TABLE audit_rollup RENAME COLUMN action_code TO action;
+    ALTER TABLE audit_rollup ALTER COLUMN action SET NOT NULL,
+                             ALTER COLUMN user_id SET NOT NULL,
+                             ALTER COLUMN user_id SET DEFAULT 0;
+    -- Names that are not actions all became code 0; merge their counts so the new key is unique
+    WITH merged AS (DELETE FROM audit_rollup RETURNING bucket, action, user_id, count)
+    INSERT INTO audit_rollup (bucket, action, user_id, count)
+    SELECT bucket, action, user_id, sum(count) FROM merged GROUP BY bucket, action, user_id;
+    ALTER TABLE audit_rollup ADD PRIMARY KEY (bucket, action, user_id);
+END $$;
+CREATE INDEX IF NOT EXISTS idx_audit_rollup_action_user_bucket ON audit_rollup (action, user_id, bucket);
+
+-- Signing keys rotated or retired at runtime (SigningKeyService); every node rebuilds its key ring from this table
+CREATE TABLE IF NOT EXISTS signing_key (
+    key_id varchar(255) PRIMARY KEY,
+    secret text,
+    retired boolean NOT NULL DEFAULT false,
+    changed_at timestamp(6) NOT NULL
+);
+
+-- The RBAC version stamped into tokens (AuthzVersions). Seeded with the current epoch milliseconds, the scale of
+-- the versions tokens carried before the counter existed, so no earlier token looks newer than the first change.
+CREATE TABLE IF NOT EXISTS rbac_version (
+    id smallint PRIMARY KEY CHECK (id = 1),
+    version bigint NOT NULL
+);
+INSERT INTO rbac_version (id, version) VALUES (1, (extract(epoch FROM clock_timestamp()) * 1000)::bigint)
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,78 @@
+package com.lucumasystems.authenticationapi;
+
+import com.lucumasystems.authenticationapi.event.InvalidationBus;
+import com.lucumasystems.authenticationapi.security.AuthzVersions;
+import com.lucumasystems.authenticationapi.security.TokenRevocationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class InvalidationBusTests {
+
+    private static final long USER_ID = Long.MAX_VALUE - 1;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+    @Autowired
+    private TokenRevocationRegistry revocationRegistry;
+    @Autowired
+    private AuthzVersions authzVersions;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void awaitListener() throws InterruptedException {
+        assertTrue(await(invalidationBus::isConnected), "invalidation bus did not connect");
+    }
+
+    @Test
+    void sessionRevokedOnAnotherNodeIsAppliedLocally() throws InterruptedException {
+        revocationRegistry.register(USER_ID, "current-jti");
+
+        notifyFromOtherNode("{\"node\":\"other-node\",\"type\":\"session\",\"userId\":" + USER_ID + "}");
+
+        assertTrue(await(() -> !revocationRegistry.isCurrent(USER_ID, "current-jti")));
+    }
+
+    @Test
+    void roleChangedOnAnotherNodeAppliesItsRbacVersion() throws InterruptedException {
+        long version = authzVersions.rbacVersion() + 1;
+
+        notifyFromOtherNode("{\"node\":\"other-node\",\"type\":\"role\",\"roleName\":\"NO_SUCH_ROLE\",\"version\":" + version + "}");
+
+        // The publisher's version is applied as is, not re-stamped with this node's clock
+        assertTrue(await(() -> authzVersions.rbacVersion() == version));
+    }
+
+    @Test
+    void malformedMessageDoesNotStopListener() throws InterruptedException {
+        revocationRegistry.register(USER_ID, "current-jti");
+
+        notifyFromOtherNode("not json");
+        notifyFromOtherNode("{\"node\":\"other-node\",\"type\":\"session\",\"userId\":" + USER_ID + "}");
+
+        assertTrue(await(() -> !revocationRegistry.isCurrent(USER_ID, "current-jti")));
+    }
+
+    private void notifyFromOtherNode(String payload) {
+        jdbcTemplate.queryForObject("SELECT pg_notify('auth_invalidation', ?)", Object.class, payload);
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+}
@@ -0,0 +1,101 @@
+package com.lucumasystems.authenticationapi;
+
+import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import com.lucumasystems.authenticationapi.security.TokenDigests;
+import com.lucumasystems.authenticationapi.service.JwtService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Access tokens issued before tokens carried a jti stay valid until they expire, as long as the session row the
+ * digest migration produced from them has not been replaced.
+ */
+@SpringBootTest
+class LegacyTokenTests {
+
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Value("${token}")
+    private String tokenSecretKey;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        user = userRepository.save(User.builder()
+                .username("legacy.test." + System.nanoTime())
+                .password("unused")
+                .roles(new HashSet<>())
+                .accountNonExpired(true)
+                .accountNonLocked(true)
+                .credentialsNonExpired(true)
+                .enabled(true)
+                .build());
+    }
+
+    @AfterEach
+    void deleteUser() {
+        jdbcTemplate.update("DELETE FROM refresh_token WHERE user_id = ?", user.getId());
+        jdbcTemplate.update("DELETE FROM user_details WHERE id = ?", user.getId());
+    }
+
+    @Test
+    void jtiLessTokenIssuedBeforeUpgradeIsAccepted() {
+        String token = legacyToken();
+        // What schema.sql leaves behind for a session that stored the access token itself
+        jdbcTemplate.update("INSERT INTO refresh_token (user_id, token_hash, expiry_date) VALUES (?, ?, ?)",
+                user.getId(), TokenDigests.sha256(token), Timestamp.valueOf(LocalDateTime.now().plusDays(1)));
+
+        assertTrue(jwtService.isValidToken(jwtService.verify(token), user));
+    }
+
+    @Test
+    void jtiLessTokenIsRejectedOnceTheUserSignsInAgain() {
+        String token = legacyToken();
+        jdbcTemplate.update("INSERT INTO refresh_token (user_id, token_hash, expiry_date) VALUES (?, ?, ?)",
+                user.getId(), TokenDigests.sha256(token), Timestamp.valueOf(LocalDateTime.now().plusDays(1)));
+
+        jwtService.generate(user, List.of(), List.of());
+
+        assertFalse(jwtService.isValidToken(jwtService.verify(token), user));
+    }
+
+    // The pre-upgrade format: no jti, no kid, details under a claim named after the user
+    private String legacyToken() {
+        Date now = new Date();
+        return Jwts.builder()
+                .subject(user.getUsername())
+                .claim(user.getUsername(), Map.of(
+                        "username", user.getUsername(),
+                        "role", List.of(),
+                        "permissions", List.of(),
+                        "userId", user.getId()))
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(tokenSecretKey)))
+                .compact();
+    }
+}
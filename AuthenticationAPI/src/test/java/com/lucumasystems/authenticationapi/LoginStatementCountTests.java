@@ -0,0 +1,100 @@
+package com.lucumasystems.authenticationapi;
+
+import com.lucumasystems.authenticationapi.controller.AuthenticationController;
+import com.lucumasystems.authenticationapi.dto.LoginDto;
+import com.lucumasystems.authenticationapi.entity.Permission;
+import com.lucumasystems.authenticationapi.entity.Role;
+import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.orm.PermissionRepository;
+import com.lucumasystems.authenticationapi.orm.RoleRepository;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class LoginStatementCountTests {
+
+    private static final String PASSWORD = "Password1!";
+
+    @Autowired
+    private AuthenticationController authenticationController;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private PermissionRepository permissionRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private String suffix;
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        suffix = Long.toString(System.nanoTime());
+        // One transaction so the cascades from user to role to permission see managed entities
+        user = new TransactionTemplate(transactionManager).execute(status -> {
+            Permission read = permissionRepository.save(Permission.builder().name("LOGIN_TEST_READ_" + suffix).active(true).build());
+            Permission write = permissionRepository.save(Permission.builder().name("LOGIN_TEST_WRITE_" + suffix).active(true).build());
+            Role reader = roleRepository.save(Role.builder().name("LOGIN_TEST_READER_" + suffix).isActive(true).permissions(Set.of(read)).build());
+            Role writer = roleRepository.save(Role.builder().name("LOGIN_TEST_WRITER_" + suffix).isActive(true).permissions(Set.of(read, write)).build());
+            return userRepository.save(User.builder()
+                    .username("login.test." + suffix)
+                    .password(passwordEncoder.encode(PASSWORD))
+                    .roles(Set.of(reader, writer))
+                    .accountNonExpired(true)
+                    .accountNonLocked(true)
+                    .credentialsNonExpired(true)
+                    .enabled(true)
+                    .build());
+        });
+    }
+
+    @AfterEach
+    void deleteUser() {
+        jdbcTemplate.update("DELETE FROM refresh_token WHERE user_id = ?", user.getId());
+        jdbcTemplate.update("DELETE FROM audit_log WHERE user_id = ?", user.getId());
+        jdbcTemplate.update("DELETE FROM user_roles WHERE user_id = ?", user.getId());
+        jdbcTemplate.update("DELETE FROM user_details WHERE id = ?", user.getId());
+        jdbcTemplate.update("DELETE FROM role_permissions WHERE role_id IN (SELECT id FROM role WHERE name LIKE ?)", "LOGIN_TEST_%_" + suffix);
+        jdbcTemplate.update("DELETE FROM role WHERE name LIKE ?", "LOGIN_TEST_%_" + suffix);
+        jdbcTemplate.update("DELETE FROM permission WHERE name LIKE ?", "LOGIN_TEST_%_" + suffix);
+    }
+
+    @Test
+    void loginUsesTwoStatements() {
+        LoginDto loginDto = new LoginDto();
+        loginDto.setUsername(user.getUsername());
+        loginDto.setPassword(PASSWORD);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ResponseHolder response = authenticationController.login(loginDto, new MockHttpServletRequest()).getBody();
+
+        assertEquals("Login Successful", response.getMessage());
+        // User with roles and permissions, token upsert; the audit entry is written later by the audit writer
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+}
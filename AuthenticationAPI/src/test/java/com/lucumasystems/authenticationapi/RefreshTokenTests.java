@@ -0,0 +1,100 @@
+package com.lucumasystems.authenticationapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucumasystems.authenticationapi.entity.User;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "token.access-ttl=PT1S")
+@AutoConfigureMockMvc
+class RefreshTokenTests {
+
+    private static final String PASSWORD = "Password1!";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        user = userRepository.save(User.builder()
+                .username("refresh.test." + System.nanoTime())
+                .password(passwordEncoder.encode(PASSWORD))
+                .roles(new HashSet<>())
+                .accountNonExpired(true)
+                .accountNonLocked(true)
+                .credentialsNonExpired(true)
+                .enabled(true)
+                .build());
+    }
+
+    @AfterEach
+    void deleteUser() {
+        jdbcTemplate.update("DELETE FROM refresh_token WHERE user_id = ?", user.getId());
+        jdbcTemplate.update("DELETE FROM audit_log WHERE user_id = ?", user.getId());
+        jdbcTemplate.update("DELETE FROM user_details WHERE id = ?", user.getId());
+    }
+
+    @Test
+    void refreshWithExpiredAccessTokenIssuesNewTokens() throws Exception {
+        JsonNode login = postJson("/auth/login", Map.of("username", user.getUsername(), "password", PASSWORD), null);
+        String accessToken = login.path("response").path("token").asText();
+        String refreshToken = login.path("response").path("refreshToken").asText();
+        Thread.sleep(2_000);
+
+        // Clients keep sending the expired access token along with the refresh request
+        JsonNode refreshed = postJson("/auth/refresh", Map.of("refreshToken", refreshToken), accessToken);
+
+        assertEquals("Token Refreshed", refreshed.path("message").asText());
+        assertNotEquals(refreshToken, refreshed.path("response").path("refreshToken").asText());
+    }
+
+    @Test
+    void refreshWithoutAccessTokenIsPermitted() throws Exception {
+        JsonNode login = postJson("/auth/login", Map.of("username", user.getUsername(), "password", PASSWORD), null);
+
+        JsonNode refreshed = postJson("/auth/refresh", Map.of("refreshToken", login.path("response").path("refreshToken").asText()), null);
+
+        assertEquals("Token Refreshed", refreshed.path("message").asText());
+    }
+
+    private JsonNode postJson(String path, Map<String, String> body, String bearer) throws Exception {
+        MockHttpServletRequestBuilder request = post(path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body));
+        if (bearer != null) {
+            request.header(HttpHeaders.AUTHORIZATION, "Bearer " + bearer);
+        }
+        String response = mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+}
@@ -0,0 +1,119 @@
+package com.lucumasystems.authenticationapi;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestAdmissionFilterTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService requests = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void releaseHeldRequest() {
+        release.countDown();
+        requests.shutdownNow();
+    }
+
+    @Test
+    void requestOverTheLimitIsRejectedWithRetryAfter() throws Exception {
+        RequestAdmissionFilter filter = filter(Duration.ofSeconds(5));
+        holdPermit(filter);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users"), response, chain);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        assertEquals("5", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertNull(chain.getRequest(), "a rejected request must not reach the chain");
+        assertEquals(1, meterRegistry.get("http.admission.rejected").counter().count());
+        assertEquals(1, meterRegistry.get("http.admission.in.flight").gauge().value());
+    }
+
+    @Test
+    void retryAfterIsAtLeastOneSecond() throws Exception {
+        RequestAdmissionFilter filter = filter(Duration.ofMillis(200));
+        holdPermit(filter);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users"), response, new MockFilterChain());
+
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void actuatorIsNotSubjectToAdmission() throws Exception {
+        RequestAdmissionFilter filter = filter(Duration.ofSeconds(5));
+        holdPermit(filter);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), response, chain);
+
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void permitIsReturnedWhenTheRequestCompletes() throws Exception {
+        RequestAdmissionFilter filter = filter(Duration.ofSeconds(5));
+        Future<?> held = holdPermit(filter);
+        release.countDown();
+        held.get(5, TimeUnit.SECONDS);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users"), response, chain);
+
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertEquals(0, meterRegistry.get("http.admission.rejected").counter().count());
+        assertEquals(0, meterRegistry.get("http.admission.in.flight").gauge().value());
+    }
+
+    private RequestAdmissionFilter filter(Duration retryAfter) {
+        return new RequestAdmissionFilter(1, Duration.ofMillis(50), retryAfter, meterRegistry);
+    }
+
+    /**
+     * Start a request that holds the only permit until {@link #release} is counted down.
+     */
+    private Future<?> holdPermit(RequestAdmissionFilter filter) throws InterruptedException {
+        FilterChain blocking = (request, response) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        Future<?> held = requests.submit(() -> {
+            filter.doFilter(new MockHttpServletRequest("GET", "/users"), new MockHttpServletResponse(), blocking);
+            return null;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return held;
+    }
+}
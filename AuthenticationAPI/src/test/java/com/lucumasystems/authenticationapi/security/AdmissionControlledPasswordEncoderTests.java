@@ -0,0 +1,126 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.error.HashingCapacityExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlledPasswordEncoderTests {
+
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(3);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingPasswordEncoder delegate = new BlockingPasswordEncoder();
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+    private AdmissionControlledPasswordEncoder encoder;
+
+    @AfterEach
+    void release() {
+        delegate.release.countDown();
+        callers.shutdownNow();
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+
+    @Test
+    void requestBeyondThePoolAndQueueIsRejectedImmediately() throws InterruptedException {
+        encoder = new AdmissionControlledPasswordEncoder(delegate, 1, 1, Duration.ofSeconds(30), RETRY_AFTER, meterRegistry);
+        callers.submit(() -> encoder.encode("running"));
+        assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> encoder.encode("queued"));
+        assertTrue(await(() -> meterRegistry.get("password.hash.queue.depth").gauge().value() == 1));
+
+        long started = System.nanoTime();
+        HashingCapacityExceededException e = assertThrows(HashingCapacityExceededException.class,
+                () -> encoder.matches("rejected", "hash"));
+
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1), "rejection should not wait");
+        assertEquals(RETRY_AFTER, e.getRetryAfter());
+        assertEquals(1, meterRegistry.get("password.hash.rejected").counter().count());
+    }
+
+    @Test
+    void requestWaitingLongerThanMaxWaitTimesOut() throws InterruptedException {
+        encoder = new AdmissionControlledPasswordEncoder(delegate, 1, 1, Duration.ofMillis(100), RETRY_AFTER, meterRegistry);
+
+        HashingCapacityExceededException e = assertThrows(HashingCapacityExceededException.class,
+                () -> encoder.encode("slow"));
+
+        assertEquals(RETRY_AFTER, e.getRetryAfter());
+        assertEquals(1, meterRegistry.get("password.hash.rejected").counter().count());
+        // The timed out hash is cancelled, which interrupts it and frees the thread for the next request
+        assertTrue(delegate.interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void resultAndDelegateExceptionsArePassedThrough() throws Exception {
+        encoder = new AdmissionControlledPasswordEncoder(delegate, 1, 1, Duration.ofSeconds(5), RETRY_AFTER, meterRegistry);
+        delegate.release.countDown();
+
+        Future<String> encoded = callers.submit(() -> encoder.encode("secret"));
+
+        assertEquals("encoded:secret", encoded.get(5, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> encoder.matches("secret", null));
+        assertEquals(0, meterRegistry.get("password.hash.rejected").counter().count());
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+
+    /**
+     * Holds every hash until {@link #release} is counted down.
+     */
+    private static final class BlockingPasswordEncoder implements PasswordEncoder {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            hold();
+            return "encoded:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            hold();
+            if (encodedPassword == null) {
+                throw new IllegalArgumentException("No encoded password");
+            }
+            return encodedPassword.equals("encoded:" + rawPassword);
+        }
+
+        private void hold() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
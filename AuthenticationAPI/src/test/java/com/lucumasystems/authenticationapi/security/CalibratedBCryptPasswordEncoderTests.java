@@ -0,0 +1,43 @@
+package com.lucumasystems.authenticationapi.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalibratedBCryptPasswordEncoderTests {
+
+    private final CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(10);
+
+    @Test
+    void lowerCostHashIsUpgraded() {
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+    }
+
+    @Test
+    void sameCostHashIsKept() {
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+    }
+
+    @Test
+    void higherCostHashIsKept() {
+        // Nodes may calibrate to neighbouring costs; a hash from a faster node must not be rehashed down
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(11).encode("secret")));
+    }
+
+    @Test
+    void otherVersionsAreRecognised() {
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(BCryptPasswordEncoder.BCryptVersion.$2B, 4).encode("secret")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(BCryptPasswordEncoder.BCryptVersion.$2Y, 4).encode("secret")));
+    }
+
+    @Test
+    void unrecognisedEncodingsAreNotUpgraded() {
+        assertFalse(encoder.upgradeEncoding(null));
+        assertFalse(encoder.upgradeEncoding(""));
+        assertFalse(encoder.upgradeEncoding("plain"));
+        assertFalse(encoder.upgradeEncoding("$2a$xx$abcdefghijklmnopqrstuv"));
+        assertFalse(encoder.upgradeEncoding("{noop}secret"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.error.LoginThrottledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginThrottleTests {
+
+    private static final String ADDRESS = "192.0.2.1";
+
+    @Test
+    void usernameIsThrottledAfterMaxFailuresRegardlessOfCase() {
+        LoginThrottle throttle = throttle(Duration.ofMinutes(15), 3, 100, 20, 1000);
+
+        throttle.recordFailure("alice", ADDRESS);
+        throttle.recordFailure("Alice", ADDRESS);
+        assertDoesNotThrow(() -> throttle.checkAllowed("ALICE", ADDRESS));
+        throttle.recordFailure("ALICE", ADDRESS);
+
+        LoginThrottledException e = assertThrows(LoginThrottledException.class, () -> throttle.checkAllowed("alice", ADDRESS));
+        assertTrue(e.getRetryAfter().compareTo(Duration.ofSeconds(1)) >= 0);
+        assertTrue(e.getRetryAfter().compareTo(Duration.ofMinutes(15)) <= 0);
+        assertDoesNotThrow(() -> throttle.checkAllowed("bob", ADDRESS));
+    }
+
+    @Test
+    void addressIsThrottledAcrossUsernames() {
+        LoginThrottle throttle = throttle(Duration.ofMinutes(15), 100, 3, 20, 1000);
+
+        throttle.recordFailure("alice", ADDRESS);
+        throttle.recordFailure("bob", ADDRESS);
+        throttle.recordFailure("carol", ADDRESS);
+
+        assertThrows(LoginThrottledException.class, () -> throttle.checkAllowed("dave", ADDRESS));
+        assertDoesNotThrow(() -> throttle.checkAllowed("dave", "192.0.2.2"));
+    }
+
+    @Test
+    void failuresLeaveTheWindowOnceItHasPassed() throws InterruptedException {
+        Duration window = Duration.ofMillis(500);
+        LoginThrottle throttle = throttle(window, 2, 100, 20, 1000);
+
+        throttle.recordFailure("alice", ADDRESS);
+        throttle.recordFailure("alice", ADDRESS);
+        assertThrows(LoginThrottledException.class, () -> throttle.checkAllowed("alice", ADDRESS));
+
+        // One bucket more than the window, so the bucket counted into has certainly left it
+        Thread.sleep(window.toMillis() + window.toMillis() / 10 + 50);
+
+        assertDoesNotThrow(() -> throttle.checkAllowed("alice", ADDRESS));
+        assertEquals(0, throttle.state("alice", ADDRESS).usernameFailures());
+    }
+
+    @Test
+    void recordFailureReportsLockoutOnceTheLongerWindowReachesTheLimit() {
+        LoginThrottle throttle = throttle(Duration.ofMinutes(15), 100, 100, 3, 1000);
+
+        assertFalse(throttle.recordFailure("alice", ADDRESS));
+        assertFalse(throttle.recordFailure("alice", ADDRESS));
+        assertTrue(throttle.recordFailure("alice", ADDRESS));
+        assertTrue(throttle.recordFailure("alice", ADDRESS));
+        assertFalse(throttle.recordFailure(null, ADDRESS));
+    }
+
+    @Test
+    void successClearsUsernameAndLockoutCountsButNotTheAddress() {
+        LoginThrottle throttle = throttle(Duration.ofMinutes(15), 2, 100, 3, 1000);
+        throttle.recordFailure("alice", ADDRESS);
+        throttle.recordFailure("alice", ADDRESS);
+
+        throttle.recordSuccess("alice");
+
+        LoginThrottle.ThrottleState state = throttle.state("alice", ADDRESS);
+        assertEquals(0, state.usernameFailures());
+        assertEquals(0, state.lockoutFailures());
+        assertEquals(2, state.addressFailures());
+        assertFalse(state.blocked());
+        assertFalse(throttle.recordFailure("alice", ADDRESS));
+    }
+
+    @Test
+    void concurrentFailuresAreAllCounted() throws Exception {
+        int threads = 8;
+        int failuresPerThread = 2_000;
+        LoginThrottle throttle = throttle(Duration.ofMinutes(15), Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < failuresPerThread; j++) {
+                        throttle.recordFailure("alice", ADDRESS);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LoginThrottle.ThrottleState state = throttle.state("alice", ADDRESS);
+        assertEquals(threads * failuresPerThread, state.usernameFailures());
+        assertEquals(threads * failuresPerThread, state.addressFailures());
+        assertEquals(threads * failuresPerThread, state.lockoutFailures());
+    }
+
+    @Test
+    void keysBeyondTheLimitAreNotTracked() {
+        LoginThrottle throttle = throttle(Duration.ofMinutes(15), 1, 100, 20, 1);
+
+        throttle.recordFailure("alice", ADDRESS);
+        throttle.recordFailure("bob", ADDRESS);
+
+        assertEquals(1, throttle.state(null, null).trackedUsernames());
+        assertDoesNotThrow(() -> throttle.checkAllowed("bob", null));
+        assertThrows(LoginThrottledException.class, () -> throttle.checkAllowed("alice", null));
+    }
+
+    @Test
+    void idleWindowsAreRemoved() throws InterruptedException {
+        Duration window = Duration.ofMillis(200);
+        LoginThrottle throttle = throttle(window, 5, 100, 20, 1000);
+        throttle.recordFailure("alice", ADDRESS);
+
+        Thread.sleep(window.toMillis() + window.toMillis() / 10 + 50);
+        throttle.removeIdleWindows();
+
+        LoginThrottle.ThrottleState state = throttle.state(null, null);
+        assertEquals(0, state.trackedUsernames());
+        assertEquals(0, state.trackedAddresses());
+    }
+
+    private static LoginThrottle throttle(Duration window, int maxFailuresPerUsername, int maxFailuresPerAddress,
+                                          int lockAfterFailures, int maxTrackedKeys) {
+        return new LoginThrottle(window, maxFailuresPerUsername, maxFailuresPerAddress, window, lockAfterFailures,
+                maxTrackedKeys, new SimpleMeterRegistry());
+    }
+}
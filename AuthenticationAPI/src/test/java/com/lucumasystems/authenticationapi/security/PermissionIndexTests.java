@@ -0,0 +1,87 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.entity.Permission;
+import com.lucumasystems.authenticationapi.entity.Role;
+import com.lucumasystems.authenticationapi.orm.PermissionRepository;
+import com.lucumasystems.authenticationapi.orm.RoleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PermissionIndexTests {
+
+    private static final Permission READ = permission(1, "READ", true);
+    private static final Permission WRITE = permission(64, "WRITE", true);
+    private static final Permission AUDIT = permission(130, "AUDIT", true);
+    private static final Permission RETIRED = permission(5, "RETIRED", false);
+
+    private final RoleRepository roleRepository = mock(RoleRepository.class);
+    private final PermissionRepository permissionRepository = mock(PermissionRepository.class);
+    private final VerifiedTokenCache verifiedTokenCache = mock(VerifiedTokenCache.class);
+    private final PermissionIndex index = new PermissionIndex(roleRepository, permissionRepository, verifiedTokenCache);
+
+    @BeforeEach
+    void build() {
+        when(permissionRepository.findAll()).thenReturn(List.of(READ, WRITE, AUDIT, RETIRED));
+        when(roleRepository.findAllWithPermissions()).thenReturn(List.of(
+                role("READER", true, READ, RETIRED),
+                role("EDITOR", true, READ, WRITE),
+                role("AUDITOR", false, AUDIT)));
+        index.rebuild();
+    }
+
+    @Test
+    void encodedPermissionsRoundTripThroughTheTokenBitmap() {
+        long[] bits = index.encode(List.of("READ", "WRITE", "AUDIT"));
+
+        long[] decoded = TokenClaims.decodeBitmap(TokenClaims.encodeBitmap(bits));
+
+        assertEquals(List.of("READ", "WRITE", "AUDIT"), index.permissionNames(decoded));
+    }
+
+    @Test
+    void inactiveAndUnknownPermissionsAreNotEncoded() {
+        long[] bits = index.encode(List.of("RETIRED", "NO_SUCH_PERMISSION"));
+
+        assertEquals(0, bits.length);
+        assertEquals(List.of(), index.permissionNames(TokenClaims.decodeBitmap(TokenClaims.encodeBitmap(bits))));
+    }
+
+    @Test
+    void effectivePermissionsAreTheUnionOfActiveRoles() {
+        long[] effective = index.effectivePermissions(Set.of("READER", "EDITOR", "AUDITOR"));
+
+        assertEquals(List.of("READ", "WRITE"), index.permissionNames(effective));
+        assertTrue(index.hasPermission(Set.of("EDITOR"), "WRITE"));
+        assertFalse(index.hasPermission(Set.of("READER"), "WRITE"));
+        assertFalse(index.hasPermission(Set.of("READER"), "RETIRED"));
+        assertFalse(index.hasPermission(Set.of("AUDITOR"), "AUDIT"));
+    }
+
+    @Test
+    void dictionaryVersionIsTheHighestActivePermissionId() {
+        assertEquals(130, index.dictionaryVersion());
+    }
+
+    @Test
+    void rebuildClearsTheVerifiedTokenCache() {
+        verify(verifiedTokenCache).invalidateAll();
+    }
+
+    private static Permission permission(int id, String name, boolean active) {
+        return Permission.builder().id(id).name(name).active(active).build();
+    }
+
+    private static Role role(String name, boolean active, Permission... permissions) {
+        return Role.builder().name(name).isActive(active).permissions(Set.of(permissions)).build();
+    }
+}
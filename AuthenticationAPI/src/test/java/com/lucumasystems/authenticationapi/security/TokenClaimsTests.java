@@ -0,0 +1,55 @@
+package com.lucumasystems.authenticationapi.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenClaimsTests {
+
+    @Test
+    void bitmapRoundTripsAcrossWordBoundaries() {
+        long[] bits = new long[3];
+        for (int id : new int[]{0, 1, 7, 8, 63, 64, 127, 128, 130}) {
+            bits[id / Long.SIZE] |= 1L << id;
+        }
+
+        assertArrayEquals(bits, TokenClaims.decodeBitmap(TokenClaims.encodeBitmap(bits)));
+    }
+
+    @Test
+    void bitmapRoundTripsTheHighBitOfEveryByte() {
+        long[] bits = {0x8080808080808080L, -1L};
+
+        assertArrayEquals(bits, TokenClaims.decodeBitmap(TokenClaims.encodeBitmap(bits)));
+    }
+
+    @Test
+    void trailingZeroBytesAreNotWritten() {
+        String encoded = TokenClaims.encodeBitmap(new long[]{1L << 3, 0, 0});
+
+        assertEquals(TokenClaims.encodeBitmap(new long[]{1L << 3}), encoded);
+        // One byte, unpadded
+        assertEquals(2, encoded.length());
+        assertArrayEquals(new long[]{1L << 3}, TokenClaims.decodeBitmap(encoded));
+    }
+
+    @Test
+    void emptyBitmapIsAnEmptyString() {
+        assertEquals("", TokenClaims.encodeBitmap(new long[0]));
+        assertEquals("", TokenClaims.encodeBitmap(new long[2]));
+        assertEquals(0, TokenClaims.decodeBitmap("").length);
+        assertEquals(0, TokenClaims.decodeBitmap(null).length);
+    }
+
+    @Test
+    void decodedBitmapIsTrimmedToTheLastSetWord() {
+        long[] bits = {5, 1L << 10, 0};
+
+        long[] decoded = TokenClaims.decodeBitmap(TokenClaims.encodeBitmap(bits));
+
+        assertArrayEquals(Arrays.copyOf(bits, 2), decoded);
+    }
+}
@@ -0,0 +1,88 @@
+package com.lucumasystems.authenticationapi.security;
+
+import com.lucumasystems.authenticationapi.orm.RefreshTokenRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class TokenRevocationRegistryTests {
+
+    private static final long USER_ID = 42;
+
+    private final TokenRevocationRegistry registry = new TokenRevocationRegistry(mock(RefreshTokenRepository.class));
+
+    @Test
+    void sessionConfirmedWithAnUnchangedGenerationIsRegistered() {
+        long generation = registry.generation();
+
+        registry.registerIfUnchanged(USER_ID, "current-jti", generation);
+
+        assertTrue(registry.isCurrent(USER_ID, "current-jti"));
+    }
+
+    @Test
+    void sessionConfirmedBeforeARevocationIsNotRegistered() {
+        long generation = registry.generation();
+        // Revoked after the database was read but before the result is registered
+        registry.revoke(USER_ID);
+
+        registry.registerIfUnchanged(USER_ID, "revoked-jti", generation);
+
+        assertFalse(registry.isCurrent(USER_ID, "revoked-jti"));
+    }
+
+    @Test
+    void sessionConfirmedBeforeARotationDoesNotReplaceTheNewToken() {
+        long generation = registry.generation();
+        registry.register(USER_ID, "rotated-jti");
+
+        registry.registerIfUnchanged(USER_ID, "old-jti", generation);
+
+        assertTrue(registry.isCurrent(USER_ID, "rotated-jti"));
+        assertFalse(registry.isCurrent(USER_ID, "old-jti"));
+    }
+
+    @Test
+    void revocationRacingWithRegistrationAlwaysWins() throws Exception {
+        ExecutorService revoker = Executors.newSingleThreadExecutor();
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                String tokenId = "jti-" + i;
+                long generation = registry.generation();
+                Future<?> revoked = revoker.submit(() -> {
+                    barrier.await();
+                    registry.revoke(USER_ID);
+                    return null;
+                });
+                barrier.await();
+                registry.registerIfUnchanged(USER_ID, tokenId, generation);
+                revoked.get();
+
+                // Whichever way the two interleaved, the revocation came after the read and must not be undone
+                assertFalse(registry.isCurrent(USER_ID, tokenId), "revoked session registered in iteration " + i);
+            }
+        } finally {
+            revoker.shutdownNow();
+        }
+    }
+
+    @Test
+    void unconditionalRegistrationReplacesAndClearsTheSession() {
+        registry.register(USER_ID, "first-jti");
+        registry.register(USER_ID, "second-jti");
+        assertFalse(registry.isCurrent(USER_ID, "first-jti"));
+        assertTrue(registry.isCurrent(USER_ID, "second-jti"));
+
+        registry.register(USER_ID, null);
+
+        assertFalse(registry.isCurrent(USER_ID, "second-jti"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.lucumasystems.authenticationapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AuditLogExporterTests {
+
+    @Test
+    void leadingFormulaCharactersAreEscaped() {
+        assertEquals("'=1+1", AuditLogExporter.csv("=1+1"));
+        assertEquals("'+1", AuditLogExporter.csv("+1"));
+        assertEquals("'-1", AuditLogExporter.csv("-1"));
+        assertEquals("'@SUM(A1)", AuditLogExporter.csv("@SUM(A1)"));
+    }
+
+    @Test
+    void formulaCharactersElsewhereAreKept() {
+        assertEquals("a=b", AuditLogExporter.csv("a=b"));
+        assertEquals("192.0.2.1", AuditLogExporter.csv("192.0.2.1"));
+        assertEquals("2026-01-01T10:00", AuditLogExporter.csv("2026-01-01T10:00"));
+    }
+
+    @Test
+    void escapedFormulaIsStillQuotedWhenItNeedsToBe() {
+        assertEquals("\"'=A1,B1\"", AuditLogExporter.csv("=A1,B1"));
+        assertEquals("\"'=HYPERLINK(\"\"http://example.com\"\")\"", AuditLogExporter.csv("=HYPERLINK(\"http://example.com\")"));
+    }
+
+    @Test
+    void separatorsQuotesAndLineBreaksAreQuoted() {
+        assertEquals("\"Mozilla/5.0 (X11, Linux)\"", AuditLogExporter.csv("Mozilla/5.0 (X11, Linux)"));
+        assertEquals("\"say \"\"hi\"\"\"", AuditLogExporter.csv("say \"hi\""));
+        assertEquals("\"a\nb\"", AuditLogExporter.csv("a\nb"));
+        assertEquals("\"a\rb\"", AuditLogExporter.csv("a\rb"));
+    }
+
+    @Test
+    void missingValuesAreEmpty() {
+        assertEquals("", AuditLogExporter.csv(null));
+        assertEquals("", AuditLogExporter.csv(""));
+    }
+}
@@ -0,0 +1,177 @@
+package com.lucumasystems.authenticationapi.service;
+
+import com.lucumasystems.authenticationapi.dto.AuditRollupPoint;
+import com.lucumasystems.authenticationapi.dto.AuditRollupSeries;
+import com.lucumasystems.authenticationapi.entity.AuditAction;
+import com.lucumasystems.authenticationapi.entity.AuditLog;
+import com.lucumasystems.authenticationapi.orm.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AuditRollupServiceTests {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 10, 0);
+    private static final LocalDateTime T1 = T0.plusMinutes(1);
+    private static final LocalDateTime T2 = T0.plusMinutes(2);
+    private static final LocalDateTime FROM = T0;
+    private static final LocalDateTime TO = T0.plusHours(1);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Test
+    void storedAndPendingCountsAreMergedInBucketThenActionCodeOrder() throws Exception {
+        AuditRollupService service = service(100);
+        stored(row(T0, AuditAction.LOGIN, 2), row(T0, AuditAction.FAILED_ATTEMPT, 1), row(T1, AuditAction.LOGOUT, 4));
+        service.record(entry(AuditAction.LOGOUT, T0.plusSeconds(30)));
+        service.record(entry(AuditAction.LOGIN, T1.plusSeconds(10)));
+        service.record(entry(AuditAction.FAILED_ATTEMPT, T0.plusSeconds(5)));
+
+        AuditRollupSeries series = service.query(null, null, FROM, TO, "minute");
+
+        assertEquals(List.of(
+                point(T0, AuditAction.LOGIN, 2),
+                point(T0, AuditAction.LOGOUT, 1),
+                point(T0, AuditAction.FAILED_ATTEMPT, 2),
+                point(T1, AuditAction.LOGIN, 1),
+                point(T1, AuditAction.LOGOUT, 4)), series.getPoints());
+        assertFalse(series.isTruncated());
+    }
+
+    @Test
+    void pendingCountsAreAddedToTheirCoarserBucket() throws Exception {
+        AuditRollupService service = service(100);
+        stored(row(T0, AuditAction.LOGIN, 5));
+        service.record(entry(AuditAction.LOGIN, T0.plusMinutes(59)));
+
+        AuditRollupSeries series = service.query("login", null, FROM, TO, "hour");
+
+        assertEquals(List.of(point(T0, AuditAction.LOGIN, 6)), series.getPoints());
+    }
+
+    @Test
+    void cutRangeStopsBeforeTheFirstBucketThatDidNotFitWhole() throws Exception {
+        AuditRollupService service = service(2);
+        // The limit plus one row: the last bucket may be missing actions beyond the limit
+        stored(row(T0, AuditAction.LOGIN, 1), row(T1, AuditAction.LOGIN, 1), row(T1, AuditAction.LOGOUT, 1));
+        service.record(entry(AuditAction.LOGOUT, T0));
+        service.record(entry(AuditAction.LOGIN, T2));
+
+        AuditRollupSeries series = service.query(null, null, FROM, TO, "minute");
+
+        assertEquals(List.of(point(T0, AuditAction.LOGIN, 1), point(T0, AuditAction.LOGOUT, 1)), series.getPoints());
+        assertTrue(series.isTruncated());
+    }
+
+    @Test
+    void limitSmallerThanOneBucketReturnsThePartialBucket() throws Exception {
+        AuditRollupService service = service(1);
+        stored(row(T0, AuditAction.LOGIN, 3), row(T0, AuditAction.LOGOUT, 1));
+        service.record(entry(AuditAction.LOGIN, T0));
+
+        AuditRollupSeries series = service.query(null, null, FROM, TO, "minute");
+
+        assertEquals(List.of(point(T0, AuditAction.LOGIN, 3)), series.getPoints());
+        assertTrue(series.isTruncated());
+    }
+
+    @Test
+    void pendingCountsBeyondTheLimitAreTruncated() {
+        AuditRollupService service = service(2);
+        service.record(entry(AuditAction.FAILED_ATTEMPT, T0));
+        service.record(entry(AuditAction.LOGOUT, T0));
+        service.record(entry(AuditAction.LOGIN, T0));
+
+        AuditRollupSeries series = service.query(null, null, FROM, TO, "minute");
+
+        assertEquals(List.of(point(T0, AuditAction.LOGIN, 1), point(T0, AuditAction.LOGOUT, 1)), series.getPoints());
+        assertTrue(series.isTruncated());
+    }
+
+    @Test
+    void pendingPerUserCountsMatchByIdAndByName() {
+        AuditRollupService service = service(100);
+        when(userRepository.findIdByUsername("alice")).thenReturn(Optional.of(7L));
+        AuditLog byId = entry(AuditAction.FAILED_ATTEMPT, T0);
+        byId.setUserId(7L);
+        AuditLog byName = entry(AuditAction.FAILED_ATTEMPT, T0);
+        byName.setUsername("alice");
+        AuditLog otherUser = entry(AuditAction.FAILED_ATTEMPT, T0);
+        otherUser.setUserId(8L);
+        service.record(byId);
+        service.record(byName);
+        service.record(otherUser);
+
+        List<AuditRollupPoint> points = service.query(null, "alice", FROM, TO, "minute").getPoints();
+
+        assertEquals(1, points.size());
+        assertEquals(2, points.get(0).getCount());
+        assertEquals("alice", points.get(0).getUsername());
+    }
+
+    @Test
+    void unknownUserHasAnEmptySeries() {
+        AuditRollupService service = service(100);
+        when(userRepository.findIdByUsername("ghost")).thenReturn(Optional.empty());
+
+        AuditRollupSeries series = service.query(null, "ghost", FROM, TO, "minute");
+
+        assertEquals(List.of(), series.getPoints());
+        assertFalse(series.isTruncated());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private AuditRollupService service(int maxPoints) {
+        return new AuditRollupService(jdbcTemplate, userRepository, "FAILED_ATTEMPT", maxPoints, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Answer the rollup query with the given rows, in the order the database would return them.
+     */
+    private void stored(ResultSet... rows) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (ResultSet row : rows) {
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    private static ResultSet row(LocalDateTime period, AuditAction action, long total) throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getTimestamp("period")).thenReturn(Timestamp.valueOf(period));
+        when(row.getInt("action")).thenReturn(action.getCode());
+        when(row.getLong("total")).thenReturn(total);
+        return row;
+    }
+
+    private static AuditLog entry(AuditAction action, LocalDateTime timestamp) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setAction(action);
+        auditLog.setTimestamp(timestamp);
+        return auditLog;
+    }
+
+    private static AuditRollupPoint point(LocalDateTime bucket, AuditAction action, long count) {
+        return AuditRollupPoint.builder().bucket(bucket).action(action.name()).count(count).build();
+    }
+}